@@ -7,7 +7,15 @@ import ch.endte.syncmatica.material.MaterialServerFeature;
 import ch.endte.syncmatica.service.DebugService;
 import ch.endte.syncmatica.service.IService;
 import ch.endte.syncmatica.service.JsonConfiguration;
+import ch.endte.syncmatica.service.MaterialService;
+import ch.endte.syncmatica.service.PersistenceService;
 import ch.endte.syncmatica.service.QuotaService;
+import ch.endte.syncmatica.service.SyncService;
+import ch.endte.syncmatica.service.TransferService;
+import ch.endte.syncmatica.util.ChecksumIndex;
+import ch.endte.syncmatica.util.FileHasher;
+import ch.endte.syncmatica.util.Md5FileHasher;
+import ch.endte.syncmatica.util.SyncmaticaUtil;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
@@ -30,8 +38,15 @@ public class Context {
     private boolean isStarted = false;
     private final QuotaService quota;
     private final DebugService debugService;
+    private final MaterialService materialService;
+    private final TransferService transferService;
+    private final PersistenceService persistenceService;
+    private final SyncService syncService;
     private final PlayerIdentifierProvider playerIdentifierProvider;
     private final MaterialServerFeature materialServerFeature;
+    private final LocalStateScanner localStateScanner;
+    private final ChecksumIndex checksumIndex;
+    private FileHasher previousFileHasher = null;
     private final List<Feature> features = new ArrayList<>();
 
 
@@ -74,13 +89,25 @@ public class Context {
         features.add(Feature.MODIFY);
         features.add(Feature.MESSAGE);
         features.add(Feature.CORE_EX);
+        features.add(Feature.WINDOWED_TRANSFER);
+        features.add(Feature.RESUME);
+        features.add(Feature.COMPRESSION);
+        features.add(Feature.PAGED_SYNC);
+        features.add(Feature.DELTA_SYNC);
+        features.add(Feature.INTEREST);
         
+        transferService = new TransferService();
+        persistenceService = new PersistenceService();
+        syncService = new SyncService();
+        materialService = new MaterialService();
         materialServerFeature = new MaterialServerFeature();
+        localStateScanner = new LocalStateScanner(this);
         
         this.litematicFolder = litematicFolder;
         litematicFolder.mkdirs();
         integratedServer = integrated;
         this.worldFolder = worldFolder;
+        checksumIndex = new ChecksumIndex(new Md5FileHasher(), new File(getConfigFolder(), "checksums.idx"));
         loadConfiguration();
     }
 
@@ -108,6 +135,26 @@ public class Context {
         return debugService;
     }
 
+    public TransferService getTransferService() {
+        return transferService;
+    }
+
+    public PersistenceService getPersistenceService() {
+        return persistenceService;
+    }
+
+    public SyncService getSyncService() {
+        return syncService;
+    }
+
+    public MaterialService getMaterialService() {
+        return materialService;
+    }
+
+    public LocalStateScanner getLocalStateScanner() {
+        return localStateScanner;
+    }
+
     public MaterialServerFeature getMaterialServerFeature() {
         return materialServerFeature;
     }
@@ -140,6 +187,7 @@ public class Context {
     }
 
     public void startup() {
+        previousFileHasher = SyncmaticaUtil.setFileHasher(checksumIndex);
         startupServices();
         isStarted = true;
         synMan.startup();
@@ -154,8 +202,11 @@ public class Context {
         shutdownServices();
         isStarted = false;
         synMan.shutdown();
+        localStateScanner.shutdown();
         
         materialServerFeature.onDisable();
+        SyncmaticaUtil.resetFileHasher(checksumIndex, previousFileHasher);
+        checksumIndex.close();
     }
 
     public boolean checkPartnerVersion(final String version) {
@@ -195,6 +246,10 @@ public class Context {
             needsRewrite = loadConfigurationForService(quota, configuration, attemptToLoad);
         }
         needsRewrite |= loadConfigurationForService(debugService, configuration, attemptToLoad);
+        needsRewrite |= loadConfigurationForService(materialService, configuration, attemptToLoad);
+        needsRewrite |= loadConfigurationForService(transferService, configuration, attemptToLoad);
+        needsRewrite |= loadConfigurationForService(persistenceService, configuration, attemptToLoad);
+        needsRewrite |= loadConfigurationForService(syncService, configuration, attemptToLoad);
         if (needsRewrite) {
             try (
                     final Writer writer = new BufferedWriter(new FileWriter(getAndCreateConfigFile()))
@@ -248,6 +303,10 @@ public class Context {
             quota.startup();
         }
         debugService.startup();
+        materialService.startup();
+        transferService.startup();
+        persistenceService.startup();
+        syncService.startup();
     }
 
     private void shutdownServices() {
@@ -255,6 +314,10 @@ public class Context {
             quota.shutdown();
         }
         debugService.shutdown();
+        materialService.shutdown();
+        transferService.shutdown();
+        persistenceService.shutdown();
+        syncService.shutdown();
     }
 
     public static class DuplicateContextAssignmentException extends RuntimeException {
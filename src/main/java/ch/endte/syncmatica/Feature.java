@@ -8,7 +8,13 @@ public enum Feature {
     MESSAGE, // ability to send messages to display from server to client
     QUOTA,  // quota on client uploads to the server
     DEBUG,  // ability to configure debugging
-    CORE_EX; // extended basic features - such as who owns a placement and subregion sharing
+    CORE_EX, // extended basic features - such as who owns a placement and subregion sharing
+    WINDOWED_TRANSFER, // litematic transfer keeps several chunks in flight and acknowledges them cumulatively
+    RESUME, // interrupted litematic downloads continue from the partially received file
+    COMPRESSION, // litematic chunks are sent as frames that may be deflate compressed
+    PAGED_SYNC, // placements are sent in pages over several ticks when joining instead of in one CONFIRM_USER packet
+    DELTA_SYNC, // a reconnecting client only receives the placement changes since the state it saw last
+    INTEREST; // the server may withhold placement details from players far away and send them once needed
 
     public static Feature fromString(final String s) {
         for (final Feature f : Feature.values()) {
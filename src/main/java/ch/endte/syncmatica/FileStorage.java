@@ -3,14 +3,19 @@ package ch.endte.syncmatica;
 import ch.endte.syncmatica.util.SyncmaticaUtil;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FileStorage implements IFileStorage {
 
-    private final HashMap<ServerPlacement, Long> buffer = new HashMap<>();
+    // states are also computed by the LocalStateScanner workers
+    private final Map<ServerPlacement, Long> buffer = new ConcurrentHashMap<>();
+    // every file whose content has been verified, so placements under other names can reuse it
+    private final Map<UUID, StoredFile> contentStore = new ConcurrentHashMap<>();
+    // modification time of the litematic folder when the client last added its files to the store
+    private long seededAt = 0;
     private Context context = null;
 
     @Override
@@ -24,17 +29,85 @@ public class FileStorage implements IFileStorage {
 
     @Override
     public LocalLitematicState getLocalState(final ServerPlacement placement) {
+        // downloads are keyed by hash, so a second placement of the same file waits for the running one
+        if (isDownloading(placement)) {
+            return LocalLitematicState.DOWNLOADING_LITEMATIC;
+        }
+        if (findLocalFile(placement) != null) {
+            return LocalLitematicState.LOCAL_LITEMATIC_PRESENT;
+        }
+        if (getSchematicPath(placement).isFile()) {
+            return LocalLitematicState.LOCAL_LITEMATIC_DESYNC;
+        }
+        return LocalLitematicState.NO_LOCAL_LITEMATIC;
+    }
+
+    @Override
+    public boolean hasHash(final UUID hash) {
+        if (getStoredFile(hash) != null) {
+            return true;
+        }
+        if (context.isServer()) {
+            final File hashFile = getHashPath(hash);
+            return hashFile.isFile() && hashCompare(hashFile, hash);
+        }
+        seedContentStore();
+        return getStoredFile(hash) != null;
+    }
+
+    // the client names files after their placement, so a file it already holds under another name
+    // is only found by hashing the folder, the checksum index keeps that cheap across restarts
+    private synchronized void seedContentStore() {
+        final File folder = context.getLitematicFolder();
+        final long modified = folder.lastModified();
+        if (modified == seededAt) {
+            return;
+        }
+        seededAt = modified;
+        final File[] files = folder.listFiles((dir, name) -> name.endsWith(".litematic"));
+        if (files == null) {
+            return;
+        }
+        for (final File file : files) {
+            if (!file.isFile()) {
+                continue;
+            }
+            try {
+                final UUID hash = SyncmaticaUtil.createChecksum(file);
+                if (getStoredFile(hash) == null) {
+                    contentStore.put(hash, new StoredFile(file));
+                }
+            } catch (final Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private File findLocalFile(final ServerPlacement placement) {
         final File localFile = getSchematicPath(placement);
         if (localFile.isFile()) {
-            if (isDownloading(placement)) {
-                return LocalLitematicState.DOWNLOADING_LITEMATIC;
+            final Long verifiedAt = buffer.get(placement);
+            if (verifiedAt != null && verifiedAt == localFile.lastModified()) {
+                return localFile;
             }
-            if ((buffer.containsKey(placement) && buffer.get(placement) == localFile.lastModified()) || hashCompare(localFile, placement)) {
-                return LocalLitematicState.LOCAL_LITEMATIC_PRESENT;
+            if (hashCompare(localFile, placement.getHash())) {
+                buffer.put(placement, localFile.lastModified());
+                return localFile;
             }
-            return LocalLitematicState.LOCAL_LITEMATIC_DESYNC;
         }
-        return LocalLitematicState.NO_LOCAL_LITEMATIC;
+        return hasHash(placement.getHash()) ? getStoredFile(placement.getHash()) : null;
+    }
+
+    private File getStoredFile(final UUID hash) {
+        final StoredFile stored = contentStore.get(hash);
+        if (stored == null) {
+            return null;
+        }
+        if (stored.file.isFile() && stored.file.lastModified() == stored.lastModified) {
+            return stored.file;
+        }
+        contentStore.remove(hash, stored);
+        return null;
     }
 
     private boolean isDownloading(final ServerPlacement placement) {
@@ -46,11 +119,10 @@ public class FileStorage implements IFileStorage {
 
     @Override
     public File getLocalLitematic(final ServerPlacement placement) {
-        if (getLocalState(placement).isLocalFileReady()) {
-            return getSchematicPath(placement);
-        } else {
+        if (isDownloading(placement)) {
             return null;
         }
+        return findLocalFile(placement);
     }
 
     
@@ -71,10 +143,15 @@ public class FileStorage implements IFileStorage {
         return file;
     }
 
-    private boolean hashCompare(final File localFile, final ServerPlacement placement) {
+    @Override
+    public File getPartialLitematic(final ServerPlacement placement) {
+        return new File(context.getLitematicFolder(), placement.getHash().toString() + ".part");
+    }
+
+    private boolean hashCompare(final File localFile, final UUID expected) {
         UUID hash = null;
         try {
-            hash = SyncmaticaUtil.createChecksum(new FileInputStream(localFile));
+            hash = SyncmaticaUtil.createChecksum(localFile);
         } catch (final Exception e) {
             
             e.printStackTrace();
@@ -83,18 +160,31 @@ public class FileStorage implements IFileStorage {
         if (hash == null) {
             return false;
         }
-        if (hash.equals(placement.getHash())) {
-            buffer.put(placement, localFile.lastModified());
+        if (hash.equals(expected)) {
+            contentStore.put(hash, new StoredFile(localFile));
             return true;
         }
         return false;
     }
 
     private File getSchematicPath(final ServerPlacement placement) {
-        final File litematicPath = context.getLitematicFolder();
         if (context.isServer()) {
-            return new File(litematicPath, placement.getHash().toString() + ".litematic");
+            return getHashPath(placement.getHash());
+        }
+        return new File(context.getLitematicFolder(), placement.getName() + ".litematic");
+    }
+
+    private File getHashPath(final UUID hash) {
+        return new File(context.getLitematicFolder(), hash.toString() + ".litematic");
+    }
+
+    private static class StoredFile {
+        final File file;
+        final long lastModified;
+
+        StoredFile(final File file) {
+            this.file = file;
+            lastModified = file.lastModified();
         }
-        return new File(litematicPath, placement.getName() + ".litematic");
     }
 }
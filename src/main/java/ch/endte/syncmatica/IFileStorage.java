@@ -1,6 +1,7 @@
 package ch.endte.syncmatica;
 
 import java.io.File;
+import java.util.UUID;
 
 public interface IFileStorage {
     public LocalLitematicState getLocalState(ServerPlacement placement);
@@ -9,5 +10,9 @@ public interface IFileStorage {
 
     public File getLocalLitematic(ServerPlacement placement);
 
+    public File getPartialLitematic(ServerPlacement placement);
+
+    public boolean hasHash(UUID hash);
+
     public void setContext(Context con);
 }
@@ -0,0 +1,17 @@
+package ch.endte.syncmatica;
+
+import com.google.gson.JsonObject;
+
+import java.util.Collection;
+import java.util.UUID;
+
+public interface IPlacementStorage {
+
+    public Collection<JsonObject> load();
+
+    public void put(UUID id, JsonObject placement);
+
+    public void remove(UUID id);
+
+    public void close();
+}
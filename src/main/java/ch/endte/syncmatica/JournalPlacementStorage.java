@@ -0,0 +1,286 @@
+package ch.endte.syncmatica;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// appends every change to placements.journal and folds the journal into placements.snapshot from time to time
+// a compaction first moves the journal aside, so changes made while the snapshot is written land in a fresh journal
+// loading replays the snapshot, the journal that was moved aside if it is still there, and then the current journal
+// placements.json is written back on every compaction and on close, so persistence.journal can be switched off again
+public class JournalPlacementStorage implements IPlacementStorage {
+
+    private static final Gson GSON = new Gson();
+    private static final String SNAPSHOT_FILE = "placements.snapshot";
+    private static final String JOURNAL_FILE = "placements.journal";
+    private static final String OLD_JOURNAL_FILE = "placements.journal.old";
+    private static final int COMPACT_MIN_RECORDS = 1024;
+
+    private final Context context;
+    private final Map<UUID, JsonObject> placements = new ConcurrentHashMap<>();
+    private final Runnable syncTask = this::sync;
+    private final Runnable compactTask = this::compact;
+    private FileOutputStream journalStream = null;
+    private Writer journal = null;
+    private int records = 0;
+    private boolean closed = false;
+    // placements.json is written back outside the storage lock, the revision keeps an older state from landing last
+    private final Object writeBackLock = new Object();
+    private long revision = 0;
+    private long writtenBack = -1;
+
+    public JournalPlacementStorage(final Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public synchronized Collection<JsonObject> load() {
+        final File folder = context.getConfigFolder();
+        final File snapshot = new File(folder, SNAPSHOT_FILE);
+        final File journalFile = new File(folder, JOURNAL_FILE);
+        final File oldJournal = new File(folder, OLD_JOURNAL_FILE);
+        if (snapshot.isFile()) {
+            putAll(JsonPlacementStorage.readPlacements(snapshot));
+        } else if (!journalFile.exists() && !oldJournal.exists()) {
+            // first start with the journal, take over the placements from the json storage
+            putAll(JsonPlacementStorage.readPlacements(new File(folder, "placements.json")));
+        }
+        int replayed = replay(oldJournal);
+        replayed += replay(journalFile);
+        // start every session from a fresh snapshot so the journal never carries records over
+        if (replayed > 0 || oldJournal.exists() || !snapshot.isFile()) {
+            if (!writeSnapshot(new ArrayList<>(placements.values()))) {
+                openJournal(true);
+                records = replayed;
+                return new ArrayList<>(placements.values());
+            }
+            oldJournal.delete();
+        }
+        openJournal(false);
+        return new ArrayList<>(placements.values());
+    }
+
+    @Override
+    public synchronized void put(final UUID id, final JsonObject placement) {
+        placements.put(id, placement);
+        revision++;
+        final JsonObject record = new JsonObject();
+        record.addProperty("op", "put");
+        record.addProperty("id", id.toString());
+        record.add("placement", placement);
+        append(record);
+    }
+
+    @Override
+    public synchronized void remove(final UUID id) {
+        placements.remove(id);
+        revision++;
+        final JsonObject record = new JsonObject();
+        record.addProperty("op", "remove");
+        record.addProperty("id", id.toString());
+        append(record);
+    }
+
+    @Override
+    public synchronized void close() {
+        sync();
+        closeJournal();
+        closed = true;
+        writeBack(revision, new ArrayList<>(placements.values()));
+    }
+
+    // brings placements.json up to date with a journal left behind by a session that had persistence.journal enabled
+    // the journal files are only dropped once placements.json holds everything they recorded
+    static void fold(final Context context) {
+        final File folder = context.getConfigFolder();
+        final File snapshot = new File(folder, SNAPSHOT_FILE);
+        final File journalFile = new File(folder, JOURNAL_FILE);
+        final File oldJournal = new File(folder, OLD_JOURNAL_FILE);
+        if (!snapshot.exists() && !journalFile.exists() && !oldJournal.exists()) {
+            return;
+        }
+        final JournalPlacementStorage storage = new JournalPlacementStorage(context);
+        if (snapshot.isFile()) {
+            storage.putAll(JsonPlacementStorage.readPlacements(snapshot));
+        } else {
+            storage.putAll(JsonPlacementStorage.readPlacements(new File(folder, "placements.json")));
+        }
+        storage.replay(oldJournal);
+        storage.replay(journalFile);
+        if (JsonPlacementStorage.writePlacements(context, storage.placements.values())) {
+            // the snapshot goes first, placements.json plus a leftover journal still replays to the same placements
+            snapshot.delete();
+            oldJournal.delete();
+            journalFile.delete();
+        }
+    }
+
+    private void putAll(final Collection<JsonObject> loaded) {
+        for (final JsonObject placement : loaded) {
+            placements.put(UUID.fromString(placement.get("id").getAsString()), placement);
+        }
+    }
+
+    // a record that cannot be parsed ends the replay, it is the torn tail of an interrupted write
+    private int replay(final File file) {
+        if (!file.isFile()) {
+            return 0;
+        }
+        int replayed = 0;
+        try (final BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                final JsonObject record = JsonParser.parseString(line).getAsJsonObject();
+                final String op = record.get("op").getAsString();
+                if ("put".equals(op)) {
+                    placements.put(UUID.fromString(record.get("id").getAsString()), record.getAsJsonObject("placement"));
+                } else if ("remove".equals(op)) {
+                    placements.remove(UUID.fromString(record.get("id").getAsString()));
+                }
+                replayed++;
+            }
+        } catch (final IOException | JsonParseException | IllegalStateException | IllegalArgumentException | NullPointerException e) {
+            e.printStackTrace();
+        }
+        return replayed;
+    }
+
+    private void append(final JsonObject record) {
+        if (closed) {
+            return;
+        }
+        if (journal == null) {
+            openJournal(true);
+        }
+        try {
+            journal.write(GSON.toJson(record));
+            journal.write('\n');
+        } catch (final IOException e) {
+            e.printStackTrace();
+        }
+        records++;
+        context.getPersistenceService().requestWrite(syncTask);
+        if (records >= COMPACT_MIN_RECORDS && records > placements.size() * 2) {
+            context.getPersistenceService().requestWrite(compactTask);
+        }
+    }
+
+    // records are buffered and reach the disk in batches, one fsync per persistence round
+    private synchronized void sync() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.flush();
+            journalStream.getFD().sync();
+        } catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void compact() {
+        final Collection<JsonObject> current;
+        final long compacted;
+        final File folder = context.getConfigFolder();
+        final File oldJournal = new File(folder, OLD_JOURNAL_FILE);
+        synchronized (this) {
+            if (closed || records < COMPACT_MIN_RECORDS || oldJournal.exists()) {
+                return;
+            }
+            sync();
+            closeJournal();
+            if (!new File(folder, JOURNAL_FILE).renameTo(oldJournal)) {
+                openJournal(true);
+                return;
+            }
+            openJournal(false);
+            records = 0;
+            current = new ArrayList<>(placements.values());
+            compacted = revision;
+        }
+        if (writeSnapshot(current)) {
+            oldJournal.delete();
+            writeBack(compacted, current);
+        }
+    }
+
+    private void writeBack(final long state, final Collection<JsonObject> current) {
+        synchronized (writeBackLock) {
+            if (state > writtenBack && JsonPlacementStorage.writePlacements(context, current)) {
+                writtenBack = state;
+            }
+        }
+    }
+
+    private boolean writeSnapshot(final Collection<JsonObject> current) {
+        final File folder = context.getConfigFolder();
+        folder.mkdirs();
+        final File snapshot = new File(folder, SNAPSHOT_FILE);
+        final File incoming = new File(folder, SNAPSHOT_FILE + ".new");
+        try {
+            try (final FileOutputStream stream = new FileOutputStream(incoming);
+                 final Writer writer = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+                GSON.toJson(JsonPlacementStorage.toDocument(current), writer);
+                writer.flush();
+                stream.getFD().sync();
+            }
+            try {
+                Files.move(incoming.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(incoming.toPath(), snapshot.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (final IOException e) {
+            e.printStackTrace();
+            incoming.delete();
+            return false;
+        }
+    }
+
+    private void openJournal(final boolean append) {
+        final File folder = context.getConfigFolder();
+        folder.mkdirs();
+        try {
+            journalStream = new FileOutputStream(new File(folder, JOURNAL_FILE), append);
+            journal = new BufferedWriter(new OutputStreamWriter(journalStream, StandardCharsets.UTF_8));
+        } catch (final IOException e) {
+            e.printStackTrace();
+            journalStream = null;
+            journal = null;
+        }
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (final IOException e) {
+                e.printStackTrace();
+            }
+        }
+        journal = null;
+        journalStream = null;
+    }
+}
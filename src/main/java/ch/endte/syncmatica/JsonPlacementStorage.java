@@ -0,0 +1,122 @@
+package ch.endte.syncmatica;
+
+import ch.endte.syncmatica.util.SyncmaticaUtil;
+import com.google.gson.*;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// keeps every placement in placements.json and rewrites the whole file on a save
+public class JsonPlacementStorage implements IPlacementStorage {
+
+    private static final Gson COMPACT_GSON = new Gson();
+    private static final Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final Context context;
+    // serialized placements kept up to date on every change, so a save never reads placements from another thread
+    private final Map<UUID, JsonObject> snapshot = new ConcurrentHashMap<>();
+    private final Runnable saveTask = this::save;
+
+    public JsonPlacementStorage(final Context context) {
+        this.context = context;
+    }
+
+    @Override
+    public Collection<JsonObject> load() {
+        // changes made while persistence.journal was enabled are folded back into placements.json first
+        JournalPlacementStorage.fold(context);
+        final Collection<JsonObject> placements = readPlacements(new File(context.getConfigFolder(), "placements.json"));
+        for (final JsonObject placement : placements) {
+            snapshot.put(UUID.fromString(placement.get("id").getAsString()), placement);
+        }
+        return placements;
+    }
+
+    @Override
+    public void put(final UUID id, final JsonObject placement) {
+        snapshot.put(id, placement);
+        context.getPersistenceService().requestWrite(saveTask);
+    }
+
+    @Override
+    public void remove(final UUID id) {
+        snapshot.remove(id);
+        context.getPersistenceService().requestWrite(saveTask);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    static Collection<JsonObject> readPlacements(final File f) {
+        final Collection<JsonObject> placements = new ArrayList<>();
+        if (f.exists() && f.isFile() && f.canRead()) {
+            JsonElement element = null;
+            try {
+                final FileReader reader = new FileReader(f);
+
+                element = JsonParser.parseReader(reader);
+                reader.close();
+
+            } catch (final Exception e) {
+                e.printStackTrace();
+            }
+            if (element == null) {
+                return placements;
+            }
+            try {
+                final JsonObject obj = element.getAsJsonObject();
+                if (obj == null || !obj.has(SyncmaticManager.PLACEMENTS_JSON_KEY)) {
+                    return placements;
+                }
+                final JsonArray arr = obj.getAsJsonArray(SyncmaticManager.PLACEMENTS_JSON_KEY);
+                for (final JsonElement elem : arr) {
+                    if (elem.isJsonObject() && elem.getAsJsonObject().has("id")) {
+                        placements.add(elem.getAsJsonObject());
+                    }
+                }
+            } catch (final IllegalStateException | NullPointerException e) {
+                e.printStackTrace();
+            }
+        }
+        return placements;
+    }
+
+    static JsonObject toDocument(final Collection<JsonObject> placements) {
+        final JsonObject obj = new JsonObject();
+        final JsonArray arr = new JsonArray();
+        for (final JsonObject p : placements) {
+            arr.add(p);
+        }
+        obj.add(SyncmaticManager.PLACEMENTS_JSON_KEY, arr);
+        return obj;
+    }
+
+    private synchronized void save() {
+        writePlacements(context, snapshot.values());
+    }
+
+    static boolean writePlacements(final Context context, final Collection<JsonObject> placements) {
+        final JsonObject obj = toDocument(placements);
+        final File backup = new File(context.getConfigFolder(), "placements.json.bak");
+        final File incoming = new File(context.getConfigFolder(), "placements.json.new");
+        final File current = new File(context.getConfigFolder(), "placements.json");
+
+        try (final FileWriter writer = new FileWriter(incoming)) {
+            writer.write(context.getPersistenceService().isWriteBehind() ? COMPACT_GSON.toJson(obj) : PRETTY_GSON.toJson(obj));
+        } catch (final IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        SyncmaticaUtil.backupAndReplace(backup.toPath(), current.toPath(), incoming.toPath());
+        return current.isFile() && !incoming.exists();
+    }
+}
@@ -0,0 +1,76 @@
+package ch.endte.syncmatica;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// computes local litematic states off the render thread, the gui reads the latest results every frame
+public class LocalStateScanner {
+
+    private final Context context;
+    private final Map<ServerPlacement, LocalLitematicState> states = new ConcurrentHashMap<>();
+    private final Set<ServerPlacement> pending = ConcurrentHashMap.newKeySet();
+    private ExecutorService executor = null;
+
+    public LocalStateScanner(final Context context) {
+        this.context = context;
+    }
+
+    // returns null until the placement has been scanned once
+    public LocalLitematicState getState(final ServerPlacement placement) {
+        final LocalLitematicState state = states.get(placement);
+        if (state == null) {
+            scan(placement);
+        }
+        return state;
+    }
+
+    public void scanAll(final Collection<ServerPlacement> placements) {
+        states.keySet().retainAll(new HashSet<>(placements));
+        for (final ServerPlacement placement : placements) {
+            scan(placement);
+        }
+    }
+
+    public void scan(final ServerPlacement placement) {
+        if (!pending.add(placement)) {
+            return;
+        }
+        getExecutor().execute(() -> {
+            // leave the pending set first so a change during the scan queues another one
+            pending.remove(placement);
+            try {
+                states.put(placement, context.getFileStorage().getLocalState(placement));
+            } catch (final RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    public synchronized void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        pending.clear();
+        states.clear();
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            final int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+            final AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                final Thread thread = new Thread(runnable, "Syncmatica-LocalState-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executor;
+    }
+}
@@ -3,10 +3,9 @@ package ch.endte.syncmatica;
 import ch.endte.syncmatica.util.SyncmaticaUtil;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 
@@ -18,7 +17,8 @@ public class RedirectFileStorage implements IFileStorage {
     
     
     
-    private final Map<UUID, RedirectData> redirect = new HashMap<>();
+    // read by the local state scanner threads while the client thread adds and drops redirects
+    private final Map<UUID, RedirectData> redirect = new ConcurrentHashMap<>();
 
     public RedirectFileStorage() {
         fs = new FileStorage();
@@ -26,13 +26,17 @@ public class RedirectFileStorage implements IFileStorage {
 
     public void addRedirect(final File file) {
         final RedirectData red = new RedirectData(file);
-        redirect.put(red.getHash(), red);
+        final UUID hash = red.getHash();
+        if (hash != null) {
+            redirect.put(hash, red);
+        }
     }
 
     @Override
     public LocalLitematicState getLocalState(final ServerPlacement placement) {
         final UUID hashId = placement.getHash();
-        if (redirect.containsKey(hashId) && hashId.equals(redirect.get(hashId).getHash())) {
+        final RedirectData red = redirect.get(hashId);
+        if (red != null && hashId.equals(red.getHash())) {
             return LocalLitematicState.LOCAL_LITEMATIC_PRESENT;
         } else {
             return fs.getLocalState(placement);
@@ -47,41 +51,52 @@ public class RedirectFileStorage implements IFileStorage {
     @Override
     public File getLocalLitematic(final ServerPlacement placement) {
         final UUID hashId = placement.getHash();
-        if (redirect.containsKey(hashId)) {
-            final RedirectData red = redirect.get(hashId);
+        final RedirectData red = redirect.get(hashId);
+        if (red != null) {
             if (red.exists() && hashId.equals(red.getHash())) {
                 return red.redirect;
             } else {
-                redirect.remove(hashId);
+                redirect.remove(hashId, red);
             }
         }
         return fs.getLocalLitematic(placement);
     }
 
+    @Override
+    public boolean hasHash(final UUID hash) {
+        final RedirectData red = redirect.get(hash);
+        if (red != null && red.exists() && hash.equals(red.getHash())) {
+            return true;
+        }
+        return fs.hasHash(hash);
+    }
+
+    @Override
+    public File getPartialLitematic(final ServerPlacement placement) {
+        return fs.getPartialLitematic(placement);
+    }
+
     @Override
     public void setContext(final Context con) {
         fs.setContext(con);
     }
 
     private class RedirectData {
-        File redirect = null;
-        UUID hash = null;
-        long hashTimeStamp;
+        final File redirect;
+        private UUID hash = null;
+        private long hashTimeStamp;
 
-        RedirectData(File file) {
+        RedirectData(final File file) {
             redirect = file;
-            getHash();
-            if (hash == null) {
-                file = null;
-            }
         }
 
-        UUID getHash() {
+        // the hash and its timestamp are only ever read and updated together
+        synchronized UUID getHash() {
             if (hashTimeStamp == redirect.lastModified()) {
                 return hash;
             }
             try {
-                hash = SyncmaticaUtil.createChecksum(new FileInputStream(redirect));
+                hash = SyncmaticaUtil.createChecksum(redirect);
             } catch (final Exception e) {
                 e.printStackTrace();
                 return null;
@@ -10,7 +10,6 @@ import net.minecraft.util.BlockRotation;
 import net.minecraft.util.math.BlockPos;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.util.UUID;
 
 public class ServerPlacement {
@@ -30,6 +29,8 @@ public class ServerPlacement {
 
     private SubRegionData subRegionData = new SubRegionData();
 
+    private long version = 0; // version of the server placement set this placement last changed in
+
     public ServerPlacement(final UUID id, final String fileName, final UUID hashValue, final PlayerIdentifier owner) {
         this.id = id;
         this.fileName = fileName;
@@ -106,6 +107,14 @@ public class ServerPlacement {
         return subRegionData;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(final long version) {
+        this.version = version;
+    }
+
     private static String removeExtension(final File file) {
         // source stackoverflow
         final String fileName = file.getName();
@@ -116,7 +125,7 @@ public class ServerPlacement {
     private static UUID generateHash(final File file) {
         UUID hash = null;
         try {
-            hash = SyncmaticaUtil.createChecksum(new FileInputStream(file));
+            hash = SyncmaticaUtil.createChecksum(file);
         } catch (final Exception e) {
             throw new RuntimeException(e);
         }
@@ -1,25 +1,44 @@
 package ch.endte.syncmatica;
 
+import ch.endte.syncmatica.spatial.SpatialIndex;
 import ch.endte.syncmatica.util.SyncmaticaUtil;
-import com.google.gson.*;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 public class SyncmaticManager {
     public static final String PLACEMENTS_JSON_KEY = "placements";
-    private final Map<UUID, ServerPlacement> schematics = new HashMap<>();
+    private final Map<UUID, ServerPlacement> schematics = new ConcurrentHashMap<>();
     private final Collection<Consumer<ServerPlacement>> consumers = new ArrayList<>();
+    private IPlacementStorage storage = null;
+    private SpatialIndex spatialIndex = null;
+    // the server numbers every change, a client resyncs from the last version it saw within the same epoch
+    // a clean shutdown saves the numbering next to the placements, after a crash the server starts a new epoch
+    private UUID epoch = UUID.randomUUID();
+    private long version = 0;
+    // placements removed since the oldest version a delta can still start from
+    private final Map<UUID, Long> tombstones = new LinkedHashMap<>();
+    private long truncatedVersion = 0;
+    // on the client, the server state the placements were synced to
+    private String syncServer = null;
+    private UUID syncEpoch = null;
+    private long syncVersion = 0;
 
     Context context;
 
     public void setContext(final Context con) {
         if (context == null) {
             context = con;
+            spatialIndex = new SpatialIndex(con);
         } else {
             throw new Context.DuplicateContextAssignmentException("Duplicate Context assignment");
         }
@@ -47,85 +66,245 @@ public class SyncmaticManager {
         consumers.add(consumer);
     }
 
+    public SpatialIndex getSpatialIndex() {
+        return spatialIndex;
+    }
+
     public void removeServerPlacementConsumer(final Consumer<ServerPlacement> consumer) {
         consumers.remove(consumer);
     }
 
     public void updateServerPlacement(final ServerPlacement updated) {
+        if (context.isServer()) {
+            recordChange(updated);
+        }
+        spatialIndex.update(updated, schematics.containsKey(updated.getId()));
         for (final Consumer<ServerPlacement> consumer : consumers) {
             consumer.accept(updated);
         }
 
-        if (context.isServer()) {
-            saveServer();
+        if (context.isServer() && storage != null) {
+            if (schematics.containsKey(updated.getId())) {
+                storage.put(updated.getId(), updated.toJson());
+            } else {
+                storage.remove(updated.getId());
+            }
         }
     }
 
-    public void startup() {
-        if (context.isServer()) {
-            loadServer();
+    public UUID getEpoch() {
+        return epoch;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    // returns null if the change log no longer reaches back to that version
+    public Collection<UUID> getRemovedSince(final long since) {
+        if (since < truncatedVersion || since > version) {
+            return null;
         }
+        final Collection<UUID> removed = new ArrayList<>();
+        for (final Map.Entry<UUID, Long> tombstone : tombstones.entrySet()) {
+            if (tombstone.getValue() > since) {
+                removed.add(tombstone.getKey());
+            }
+        }
+        return removed;
     }
 
-    public void shutdown() {
+    private void recordChange(final ServerPlacement updated) {
+        updated.setVersion(++version);
+        // re-inserting keeps the tombstones ordered by version
+        tombstones.remove(updated.getId());
+        if (!schematics.containsKey(updated.getId())) {
+            tombstones.put(updated.getId(), version);
+        }
+        final int changeLogSize = context.getSyncService().getChangeLogSize();
+        final Iterator<Map.Entry<UUID, Long>> iterator = tombstones.entrySet().iterator();
+        while (tombstones.size() > changeLogSize && iterator.hasNext()) {
+            truncatedVersion = iterator.next().getValue();
+            iterator.remove();
+        }
     }
 
-    private void saveServer() {
-        final JsonObject obj = new JsonObject();
-        final JsonArray arr = new JsonArray();
+    public void setSyncState(final String serverName, final UUID syncEpoch, final long syncVersion) {
+        syncServer = serverName;
+        this.syncEpoch = syncEpoch;
+        this.syncVersion = syncVersion;
+    }
 
-        for (final ServerPlacement p : getAll()) {
-            arr.add(p.toJson());
+    public SyncState loadSyncState(final String serverName) {
+        if (serverName == null) {
+            return null;
+        }
+        final File f = getSyncStateFile(serverName);
+        if (!f.isFile()) {
+            return null;
         }
+        try (final FileReader reader = new FileReader(f)) {
+            final JsonObject obj = JsonParser.parseReader(reader).getAsJsonObject();
+            final Collection<JsonObject> placements = new ArrayList<>();
+            for (final JsonElement elem : obj.getAsJsonArray(PLACEMENTS_JSON_KEY)) {
+                placements.add(elem.getAsJsonObject());
+            }
+            return new SyncState(UUID.fromString(obj.get("epoch").getAsString()), obj.get("version").getAsLong(), placements);
+        } catch (final Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
 
-        obj.add(PLACEMENTS_JSON_KEY, arr);
-        final File backup = new File(context.getConfigFolder(), "placements.json.bak");
-        final File incoming = new File(context.getConfigFolder(), "placements.json.new");
-        final File current = new File(context.getConfigFolder(), "placements.json");
+    public void restoreSyncState(final SyncState state) {
+        for (final JsonObject json : state.placements) {
+            try {
+                final ServerPlacement placement = ServerPlacement.fromJson(json, context);
+                if (placement != null) {
+                    addPlacement(placement);
+                }
+            } catch (final IllegalStateException | IllegalArgumentException | NullPointerException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 
-        try (final FileWriter writer = new FileWriter(incoming)) {
-            writer.write(new GsonBuilder().setPrettyPrinting().create().toJson(obj));
+    private void saveSyncState() {
+        final Collection<JsonObject> placements = new ArrayList<>();
+        for (final ServerPlacement placement : schematics.values()) {
+            placements.add(placement.toJson());
+        }
+        final JsonObject obj = JsonPlacementStorage.toDocument(placements);
+        obj.addProperty("epoch", syncEpoch.toString());
+        obj.addProperty("version", syncVersion);
+        final File f = getSyncStateFile(syncServer);
+        f.getParentFile().mkdirs();
+        try (final FileWriter writer = new FileWriter(f)) {
+            new Gson().toJson(obj, writer);
         } catch (final IOException e) {
             e.printStackTrace();
-            return;
         }
+    }
 
-        SyncmaticaUtil.backupAndReplace(backup.toPath(), current.toPath(), incoming.toPath());
+    private File getSyncStateFile(final String serverName) {
+        return new File(new File(context.getConfigFolder(), "sync"), SyncmaticaUtil.sanitizeFileName(serverName) + ".json");
     }
 
-    private void loadServer() {
-        final File f = new File(context.getConfigFolder(), "placements.json");
-        if (f.exists() && f.isFile() && f.canRead()) {
-            JsonElement element = null;
-            try {
-                final FileReader reader = new FileReader(f);
+    public void startup() {
+        if (context.isServer()) {
+            storage = context.getPersistenceService().isJournal() ? new JournalPlacementStorage(context) : new JsonPlacementStorage(context);
+            loadServer();
+        }
+    }
 
-                element = JsonParser.parseReader(reader);
-                reader.close();
+    public void shutdown() {
+        if (!context.isServer() && syncEpoch != null) {
+            saveSyncState();
+        }
+        if (storage != null) {
+            saveServerState();
+            storage.close();
+            storage = null;
+        }
+        spatialIndex.shutdown();
+    }
 
-            } catch (final Exception e) {
+    private void loadServer() {
+        final Map<UUID, Long> versions = loadServerState();
+        final Collection<ServerPlacement> unversioned = new ArrayList<>();
+        for (final JsonObject json : storage.load()) {
+            try {
+                final ServerPlacement placement = ServerPlacement.fromJson(json, context);
+                if (placement != null) {
+                    final Long saved = versions.get(placement.getId());
+                    if (saved != null) {
+                        placement.setVersion(saved);
+                    } else {
+                        unversioned.add(placement);
+                    }
+                    schematics.put(placement.getId(), placement);
+                    spatialIndex.update(placement, true);
+                }
+            } catch (final IllegalStateException | NullPointerException e) {
                 e.printStackTrace();
             }
-            if (element == null) {
+        }
+        for (final ServerPlacement placement : unversioned) {
+            placement.setVersion(++version);
+        }
+    }
 
+    private File getServerStateFile() {
+        return new File(context.getConfigFolder(), "placements.state");
+    }
 
-                return;
+    // the state only describes the placements as they were at the last clean shutdown
+    // it is deleted once read, so a crash afterwards leaves no state and the next start begins a new epoch
+    private Map<UUID, Long> loadServerState() {
+        final Map<UUID, Long> versions = new HashMap<>();
+        final File f = getServerStateFile();
+        if (!f.isFile()) {
+            return versions;
+        }
+        try (final FileReader reader = new FileReader(f)) {
+            final JsonObject obj = JsonParser.parseReader(reader).getAsJsonObject();
+            final Map<UUID, Long> savedTombstones = new LinkedHashMap<>();
+            for (final Map.Entry<String, JsonElement> entry : obj.getAsJsonObject("versions").entrySet()) {
+                versions.put(UUID.fromString(entry.getKey()), entry.getValue().getAsLong());
             }
-            try {
-                final JsonObject obj = element.getAsJsonObject();
-                if (obj == null || !obj.has(PLACEMENTS_JSON_KEY)) {
-                    return;
-                }
-                final JsonArray arr = obj.getAsJsonArray(PLACEMENTS_JSON_KEY);
-                for (final JsonElement elem : arr) {
-                    final ServerPlacement placement = ServerPlacement.fromJson(elem.getAsJsonObject(), context);
-                    schematics.put(placement.getId(), placement); 
-                }
-
-            } catch (final IllegalStateException | NullPointerException e) {
-                e.printStackTrace();
+            for (final Map.Entry<String, JsonElement> entry : obj.getAsJsonObject("tombstones").entrySet()) {
+                savedTombstones.put(UUID.fromString(entry.getKey()), entry.getValue().getAsLong());
             }
+            final UUID savedEpoch = UUID.fromString(obj.get("epoch").getAsString());
+            final long savedVersion = obj.get("version").getAsLong();
+            final long savedTruncatedVersion = obj.get("truncatedVersion").getAsLong();
+            epoch = savedEpoch;
+            version = savedVersion;
+            truncatedVersion = savedTruncatedVersion;
+            tombstones.putAll(savedTombstones);
+        } catch (final Exception e) {
+            e.printStackTrace();
+            versions.clear();
         }
+        f.delete();
+        return versions;
     }
 
+    private void saveServerState() {
+        final JsonObject versions = new JsonObject();
+        for (final ServerPlacement placement : schematics.values()) {
+            versions.addProperty(placement.getId().toString(), placement.getVersion());
+        }
+        final JsonObject removed = new JsonObject();
+        for (final Map.Entry<UUID, Long> tombstone : tombstones.entrySet()) {
+            removed.addProperty(tombstone.getKey().toString(), tombstone.getValue());
+        }
+        final JsonObject obj = new JsonObject();
+        obj.addProperty("epoch", epoch.toString());
+        obj.addProperty("version", version);
+        obj.addProperty("truncatedVersion", truncatedVersion);
+        obj.add("versions", versions);
+        obj.add("tombstones", removed);
+        final File f = getServerStateFile();
+        f.getParentFile().mkdirs();
+        try (final FileWriter writer = new FileWriter(f)) {
+            new Gson().toJson(obj, writer);
+        } catch (final IOException e) {
+            e.printStackTrace();
+            f.delete();
+        }
+    }
+
+    // the placements a client last saw on a server, so a reconnect only needs the changes since then
+    public static class SyncState {
+        public final UUID epoch;
+        public final long version;
+        private final Collection<JsonObject> placements;
+
+        SyncState(final UUID epoch, final long version, final Collection<JsonObject> placements) {
+            this.epoch = epoch;
+            this.version = version;
+            this.placements = placements;
+        }
+    }
 }
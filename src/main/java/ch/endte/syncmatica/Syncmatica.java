@@ -65,6 +65,9 @@ public class Syncmatica {
     }
 
     public static Context getContext(final Identifier id) {
+        if (contexts == null) {
+            return null;
+        }
         return contexts.get(id);
     }
 
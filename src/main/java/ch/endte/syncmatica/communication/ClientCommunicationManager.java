@@ -8,21 +8,28 @@ import ch.endte.syncmatica.communication.exchange.DownloadExchange;
 import ch.endte.syncmatica.communication.exchange.Exchange;
 import ch.endte.syncmatica.communication.exchange.VersionHandshakeClient;
 import ch.endte.syncmatica.extended_core.PlayerIdentifier;
+import ch.endte.syncmatica.extended_core.SubRegionPlacementModification;
 import ch.endte.syncmatica.litematica.LitematicManager;
 import ch.endte.syncmatica.litematica.ScreenHelper;
 import ch.endte.syncmatica.mixin_actor.ActorClientPlayNetworkHandler;
 import fi.dy.masa.malilib.gui.Message;
+import io.netty.buffer.Unpooled;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
 
 public class ClientCommunicationManager extends CommunicationManager {
 
     private final ExchangeTarget server;
     private final Collection<ServerPlacement> sharing;
+    // placements the server reported as changed without sending the details
+    private final Collection<UUID> stale = new HashSet<>();
 
     public ClientCommunicationManager(final ExchangeTarget server) {
         super();
@@ -43,18 +50,29 @@ public class ClientCommunicationManager extends CommunicationManager {
             return;
         }
         if (id.equals(PacketType.REMOVE_SYNCMATIC.identifier)) {
+            removePlacement(packetBuf.readUuid());
+            return;
+        }
+        if (id.equals(PacketType.PLACEMENT_STALE.identifier)) {
             final UUID placementId = packetBuf.readUuid();
             final ServerPlacement placement = context.getSyncmaticManager().getPlacement(placementId);
-            if (placement != null) {
-                final Exchange modifier = getModifier(placement);
-                if (modifier != null) {
-                    modifier.close(false);
-                    notifyClose(modifier);
-                }
-                context.getSyncmaticManager().removePlacement(placement);
-                if (LitematicManager.getInstance().isRendered(placement)) {
-                    LitematicManager.getInstance().unrenderSyncmatic(placement);
-                }
+            stale.add(placementId);
+            // a rendered placement is in use, so it cannot wait until the player comes close
+            if (placement != null && LitematicManager.getInstance().isRendered(placement)) {
+                fetchStale();
+            }
+            return;
+        }
+        if (id.equals(PacketType.SYNC_PLACEMENTS.identifier)) {
+            final int removedCount = packetBuf.readInt();
+            for (int i = 0; i < removedCount; i++) {
+                final UUID placementId = packetBuf.readUuid();
+                stale.remove(placementId);
+                removePlacement(placementId);
+            }
+            final int placementCount = packetBuf.readInt();
+            for (int i = 0; i < placementCount; i++) {
+                applyPlacement(receiveMetaData(packetBuf, source));
             }
             return;
         }
@@ -87,6 +105,60 @@ public class ClientCommunicationManager extends CommunicationManager {
         }
     }
 
+    private void removePlacement(final UUID placementId) {
+        final ServerPlacement placement = context.getSyncmaticManager().getPlacement(placementId);
+        if (placement != null) {
+            final Exchange modifier = getModifier(placement);
+            if (modifier != null) {
+                modifier.close(false);
+                notifyClose(modifier);
+            }
+            context.getSyncmaticManager().removePlacement(placement);
+            if (LitematicManager.getInstance().isRendered(placement)) {
+                LitematicManager.getInstance().unrenderSyncmatic(placement);
+            }
+        }
+    }
+
+    // a known placement is updated in place so a rendered schematic follows it
+    private void applyPlacement(final ServerPlacement received) {
+        stale.remove(received.getId());
+        final ServerPlacement placement = context.getSyncmaticManager().getPlacement(received.getId());
+        if (placement == null) {
+            context.getSyncmaticManager().addPlacement(received);
+            return;
+        }
+        placement.move(received.getOrigin(), received.getRotation(), received.getMirror());
+        placement.getSubRegionData().reset();
+        if (received.getSubRegionData().isModified()) {
+            for (final SubRegionPlacementModification modification : received.getSubRegionData().getModificationData().values()) {
+                placement.getSubRegionData().modify(modification);
+            }
+        }
+        placement.setLastModifiedBy(received.getLastModifiedBy());
+        LitematicManager.getInstance().updateRendered(placement);
+        context.getSyncmaticManager().updateServerPlacement(placement);
+    }
+
+    // asks the server for every placement it withheld, called once the placement list is looked at
+    // the ids are sent in pages that fit into a serverbound payload
+    public void fetchStale() {
+        final Iterator<UUID> iterator = new ArrayList<>(stale).iterator();
+        while (iterator.hasNext()) {
+            final List<UUID> page = new ArrayList<>();
+            while (page.size() < ServerCommunicationManager.MAX_FETCH && iterator.hasNext()) {
+                page.add(iterator.next());
+            }
+            final PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+            buf.writeInt(page.size());
+            for (final UUID placementId : page) {
+                buf.writeUuid(placementId);
+            }
+            server.sendPacket(PacketType.FETCH_PLACEMENTS.identifier, buf, context);
+            stale.removeAll(page);
+        }
+    }
+
     @Override
     protected void handleExchange(final Exchange exchange) {
         if (exchange instanceof DownloadExchange && exchange.isSuccessful()) {
@@ -97,6 +169,7 @@ public class ClientCommunicationManager extends CommunicationManager {
     @Override
     public void setDownloadState(final ServerPlacement syncmatic, final boolean state) {
         downloadState.put(syncmatic.getHash(), state);
+        context.getLocalStateScanner().scan(syncmatic);
         if (state || LitematicManager.getInstance().isRendered(syncmatic)) { 
             context.getSyncmaticManager().updateServerPlacement(syncmatic);
         }
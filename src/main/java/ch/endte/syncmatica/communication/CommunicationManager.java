@@ -19,8 +19,10 @@ import net.minecraft.util.math.BlockPos;
 
 import java.io.File;
 import java.io.IOException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class CommunicationManager {
     protected final Collection<ExchangeTarget> broadcastTargets;
@@ -28,6 +30,7 @@ public abstract class CommunicationManager {
     
     protected final Map<UUID, Boolean> downloadState;
     protected final Map<UUID, Exchange> modifyState;
+    protected final Map<UUID, PartialDigest> partialDigests;
 
     protected Context context;
 
@@ -36,8 +39,9 @@ public abstract class CommunicationManager {
 
     protected CommunicationManager() {
         broadcastTargets = new ArrayList<>();
-        downloadState = new HashMap<>();
+        downloadState = new ConcurrentHashMap<>();
         modifyState = new HashMap<>();
+        partialDigests = new HashMap<>();
     }
 
     public boolean handlePacket(final Identifier id) {
@@ -46,11 +50,13 @@ public abstract class CommunicationManager {
 
     public void onPacket(final ExchangeTarget source, final Identifier id, final PacketByteBuf packetBuf) {
         context.getDebugService().logReceivePacket(id);
-        Exchange handler = null;
-        final Collection<Exchange> potentialMessageTarget = source.getExchanges();
-        if (potentialMessageTarget != null) {
-            for (final Exchange target : potentialMessageTarget) {
-                if (target.checkPacket(id, packetBuf)) {
+        Exchange handler = source.getRoute(PacketType.fromIdentifier(id), packetBuf);
+        if (handler != null) {
+            handler.handle(id, packetBuf);
+        } else {
+            // exchanges without a placement, like the handshakes, still decide for themselves
+            for (final Exchange target : source.getExchanges()) {
+                if (target.getRoutingId() == null && target.checkPacket(id, packetBuf)) {
                     target.handle(id, packetBuf);
                     handler = target;
                     break;
@@ -178,7 +184,8 @@ public abstract class CommunicationManager {
             throw new IllegalArgumentException(syncmatic.toString() + " is not ready for download local state is: " + context.getFileStorage().getLocalState(syncmatic).toString());
         }
         final File toDownload = context.getFileStorage().createLocalLitematic(syncmatic);
-        final Exchange downloadExchange = new DownloadExchange(syncmatic, toDownload, source, context);
+        final File partial = context.getFileStorage().getPartialLitematic(syncmatic);
+        final Exchange downloadExchange = new DownloadExchange(syncmatic, toDownload, partial, source, context);
         setDownloadState(syncmatic, true);
         startExchange(downloadExchange);
     }
@@ -191,6 +198,19 @@ public abstract class CommunicationManager {
         return downloadState.getOrDefault(syncmatic.getHash(), false);
     }
 
+    public void setPartialDigest(final ServerPlacement syncmatic, final MessageDigest digest, final long length) {
+        partialDigests.put(syncmatic.getHash(), new PartialDigest(digest, length));
+    }
+
+    // the retained digest is only handed out if it still matches the partial file on disk
+    public MessageDigest takePartialDigest(final ServerPlacement syncmatic, final long length) {
+        final PartialDigest partial = partialDigests.remove(syncmatic.getHash());
+        if (partial == null || partial.length != length) {
+            return null;
+        }
+        return partial.digest;
+    }
+
     public void setModifier(final ServerPlacement syncmatic, final Exchange exchange) {
         modifyState.put(syncmatic.getHash(), exchange);
     }
@@ -207,7 +227,7 @@ public abstract class CommunicationManager {
     }
 
     protected void startExchangeUnchecked(final Exchange newExchange) {
-        newExchange.getPartner().getExchanges().add(newExchange);
+        newExchange.getPartner().addExchange(newExchange);
         newExchange.init();
         if (newExchange.isFinished()) {
             notifyClose(newExchange);
@@ -223,7 +243,17 @@ public abstract class CommunicationManager {
     }
 
     public void notifyClose(final Exchange e) {
-        e.getPartner().getExchanges().remove(e);
+        e.getPartner().removeExchange(e);
         handleExchange(e);
     }
+
+    protected static class PartialDigest {
+        final MessageDigest digest;
+        final long length;
+
+        PartialDigest(final MessageDigest digest, final long length) {
+            this.digest = digest;
+            this.length = length;
+        }
+    }
 }
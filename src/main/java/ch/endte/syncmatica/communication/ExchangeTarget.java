@@ -12,7 +12,12 @@ import net.minecraft.util.Identifier;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 
 
@@ -24,6 +29,8 @@ public class ExchangeTarget {
 
     private FeatureSet features;
     private final List<Exchange> ongoingExchanges = new ArrayList<>(); 
+    // exchanges by the packets they are waiting for, so a packet does not have to be offered to every exchange
+    private final Map<PacketType, Map<UUID, Exchange>> routes = new EnumMap<>(PacketType.class);
 
     public ExchangeTarget(ClientPlayNetworkHandler clientPlayNetworkHandler) {
         this.clientPlayNetworkHandler = clientPlayNetworkHandler;
@@ -64,7 +71,54 @@ public class ExchangeTarget {
     }
 
     public Collection<Exchange> getExchanges() {
-        return ongoingExchanges;
+        return Collections.unmodifiableList(ongoingExchanges);
+    }
+
+    public void addExchange(final Exchange exchange) {
+        ongoingExchanges.add(exchange);
+        addRoutes(exchange);
+    }
+
+    public void removeExchange(final Exchange exchange) {
+        ongoingExchanges.remove(exchange);
+        if (exchange.getRoutingId() == null) {
+            return;
+        }
+        boolean removed = false;
+        for (final Map<UUID, Exchange> byId : routes.values()) {
+            removed |= byId.values().remove(exchange);
+        }
+        if (removed) {
+            // an older exchange for the same placement keeps priority, so a later one only takes over now
+            for (final Exchange other : ongoingExchanges) {
+                addRoutes(other);
+            }
+        }
+    }
+
+    // the first exchange registered for a packet gets it, same as the order of the scan over all exchanges
+    public void addRoute(final PacketType type, final UUID placementId, final Exchange exchange) {
+        routes.computeIfAbsent(type, key -> new HashMap<>()).putIfAbsent(placementId, exchange);
+    }
+
+    private void addRoutes(final Exchange exchange) {
+        final UUID placementId = exchange.getRoutingId();
+        if (placementId == null) {
+            return;
+        }
+        for (final PacketType type : exchange.getRoutedPackets()) {
+            addRoute(type, placementId, exchange);
+        }
+    }
+
+    // peeks at the placement id the packet starts with, the reader index is left untouched
+    public Exchange getRoute(final PacketType type, final PacketByteBuf packetBuf) {
+        final Map<UUID, Exchange> byId = type == null ? null : routes.get(type);
+        if (byId == null || byId.isEmpty() || packetBuf.readableBytes() < 16) {
+            return null;
+        }
+        final int r = packetBuf.readerIndex();
+        return byId.get(new UUID(packetBuf.getLong(r), packetBuf.getLong(r + 8)));
     }
 
     public String getPersistentName() {
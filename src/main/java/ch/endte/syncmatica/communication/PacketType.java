@@ -2,6 +2,9 @@ package ch.endte.syncmatica.communication;
 
 import net.minecraft.util.Identifier;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public enum PacketType {
 
     REGISTER_METADATA("syncmatica:register_metadata"),
@@ -17,6 +20,10 @@ public enum PacketType {
     
     
 
+    REQUEST_LITEMATIC_RESUME("syncmatica:request_download_resume"),
+    
+    
+
     SEND_LITEMATIC("syncmatica:send_litematic"),
     
 
@@ -50,6 +57,24 @@ public enum PacketType {
     
     
 
+    SYNC_PLACEMENTS("syncmatica:sync_placements"),
+    
+    
+
+    SYNC_STATE("syncmatica:sync_state"),
+    
+    
+
+    PLACEMENT_STALE("syncmatica:placement_stale"),
+    
+    
+
+    FETCH_PLACEMENTS("syncmatica:fetch_placements"),
+    
+    
+    
+    
+
     FEATURE_REQUEST("syncmatica:feature_request"),
     
     
@@ -80,16 +105,24 @@ public enum PacketType {
 
     public final Identifier identifier;
 
+    private static final Map<Identifier, PacketType> BY_IDENTIFIER = new HashMap<>();
+
+    static {
+        for (final PacketType p : PacketType.values()) {
+            BY_IDENTIFIER.put(p.identifier, p);
+        }
+    }
+
     PacketType(final String id) {
         identifier = new Identifier(id);
     }
 
+    // returns null for identifiers that are not syncmatica packets
+    public static PacketType fromIdentifier(final Identifier id) {
+        return BY_IDENTIFIER.get(id);
+    }
+
     public static boolean containsIdentifier(final Identifier id) {
-        for (final PacketType p : PacketType.values()) {
-            if (id.equals(p.identifier)) { 
-                return true;
-            }
-        }
-        return false;
+        return BY_IDENTIFIER.containsKey(id);
     }
 }
@@ -5,6 +5,7 @@ import ch.endte.syncmatica.LocalLitematicState;
 import ch.endte.syncmatica.ServerPlacement;
 import ch.endte.syncmatica.communication.exchange.*;
 import ch.endte.syncmatica.extended_core.PlayerIdentifier;
+import ch.endte.syncmatica.spatial.Box;
 import com.mojang.authlib.GameProfile;
 import io.netty.buffer.Unpooled;
 import net.minecraft.network.PacketByteBuf;
@@ -18,8 +19,16 @@ import java.util.*;
 
 public class ServerCommunicationManager extends CommunicationManager {
 
-    private final Map<UUID, List<ServerPlacement>> downloadingFile = new HashMap<>();
+    // placements waiting for a running download of the same file, with the player that shared each of them
+    private final Map<UUID, Map<ServerPlacement, ExchangeTarget>> downloadingFile = new HashMap<>();
     private final Map<ExchangeTarget, ServerPlayerEntity> playerMap = new HashMap<>();
+    // placements whose details were withheld from a player, sent once the player comes close or asks for them
+    private final Map<ExchangeTarget, Set<UUID>> deferred = new HashMap<>();
+    private int ticks = 0;
+
+    private static final int INTEREST_CHECK_INTERVAL = 20;
+    // as many ids as fit into a serverbound payload next to their count
+    public static final int MAX_FETCH = (32767 - 4) / 16;
 
     public ServerCommunicationManager() {
         super();
@@ -49,6 +58,23 @@ public class ServerCommunicationManager extends CommunicationManager {
         startExchangeUnchecked(hi);
     }
 
+    // advances the paged placement syncs of joining players and sends deferred placements to players that came close
+    public void tick() {
+        if (++ticks % INTEREST_CHECK_INTERVAL == 0) {
+            sendInterested();
+        }
+        for (final ExchangeTarget target : new ArrayList<>(playerMap.keySet())) {
+            for (final Exchange exchange : new ArrayList<>(target.getExchanges())) {
+                if (exchange instanceof VersionHandshakeServer) {
+                    ((VersionHandshakeServer) exchange).tick();
+                    if (exchange.isFinished()) {
+                        notifyClose(exchange);
+                    }
+                }
+            }
+        }
+    }
+
     public void onPlayerLeave(final ExchangeTarget oldPlayer) {
         final Collection<Exchange> potentialMessageTarget = oldPlayer.getExchanges();
         if (potentialMessageTarget != null) {
@@ -59,12 +85,15 @@ public class ServerCommunicationManager extends CommunicationManager {
         }
         broadcastTargets.remove(oldPlayer);
         playerMap.remove(oldPlayer);
+        deferred.remove(oldPlayer);
     }
 
     @Override
     protected void handle(final ExchangeTarget source, final Identifier id, final PacketByteBuf packetBuf) {
-        if (id.equals(PacketType.REQUEST_LITEMATIC.identifier)) {
+        if (id.equals(PacketType.REQUEST_LITEMATIC.identifier)
+                || id.equals(PacketType.REQUEST_LITEMATIC_RESUME.identifier)) {
             final UUID syncmaticaId = packetBuf.readUuid();
+            final long offset = id.equals(PacketType.REQUEST_LITEMATIC_RESUME.identifier) ? packetBuf.readLong() : 0;
             final ServerPlacement placement = context.getSyncmaticManager().getPlacement(syncmaticaId);
             if (placement == null) {
                 return;
@@ -72,7 +101,7 @@ public class ServerCommunicationManager extends CommunicationManager {
             final File toUpload = context.getFileStorage().getLocalLitematic(placement);
             final UploadExchange upload;
             try {
-                upload = new UploadExchange(placement, toUpload, source, context);
+                upload = new UploadExchange(placement, toUpload, offset, source, context);
             } catch (final FileNotFoundException e) {
                 
                 e.printStackTrace();
@@ -100,7 +129,7 @@ public class ServerCommunicationManager extends CommunicationManager {
             if (!context.getFileStorage().getLocalState(placement).isLocalFileReady()) {
                 
                 if (context.getFileStorage().getLocalState(placement) == LocalLitematicState.DOWNLOADING_LITEMATIC) {
-                    downloadingFile.computeIfAbsent(placement.getHash(), key -> new ArrayList<>()).add(placement);
+                    downloadingFile.computeIfAbsent(placement.getHash(), key -> new LinkedHashMap<>()).put(placement, source);
                     return;
                 }
                 try {
@@ -126,11 +155,15 @@ public class ServerCommunicationManager extends CommunicationManager {
                     notifyClose(modifier);
                 }
                 context.getSyncmaticManager().removePlacement(placement);
+                for (final Set<UUID> withheld : deferred.values()) {
+                    withheld.remove(placement.getId());
+                }
+                final PacketByteBuf newPacketBuf = new PacketByteBuf(Unpooled.buffer());
+                newPacketBuf.writeUuid(placement.getId());
                 for (final ExchangeTarget client : broadcastTargets) {
-                    final PacketByteBuf newPacketBuf = new PacketByteBuf(Unpooled.buffer());
-                    newPacketBuf.writeUuid(placement.getId());
-                    client.sendPacket(PacketType.REMOVE_SYNCMATIC.identifier, newPacketBuf, context);
+                    client.sendPacket(PacketType.REMOVE_SYNCMATIC.identifier, share(newPacketBuf), context);
                 }
+                newPacketBuf.release();
             }
         }
         if (id.equals(PacketType.MODIFY_REQUEST.identifier)) {
@@ -138,6 +171,18 @@ public class ServerCommunicationManager extends CommunicationManager {
             final ModifyExchangeServer modifier = new ModifyExchangeServer(placementId, source, context);
             startExchange(modifier);
         }
+        if (id.equals(PacketType.FETCH_PLACEMENTS.identifier)) {
+            final int count = Math.min(packetBuf.readInt(), MAX_FETCH);
+            final Collection<UUID> requested = new LinkedHashSet<>();
+            for (int i = 0; i < count; i++) {
+                requested.add(packetBuf.readUuid());
+            }
+            final Set<UUID> withheld = deferred.get(source);
+            if (withheld != null) {
+                withheld.removeAll(requested);
+            }
+            sendPlacements(source, requested);
+        }
     }
 
     @Override
@@ -146,22 +191,21 @@ public class ServerCommunicationManager extends CommunicationManager {
             final ServerPlacement p = ((DownloadExchange) exchange).getPlacement();
 
             if (exchange.isSuccessful()) {
+                context.getMaterialServerFeature().onLitematicStored(p);
                 addPlacement(exchange.getPartner(), p);
                 if (downloadingFile.containsKey(p.getHash())) {
-                    for (final ServerPlacement placement : downloadingFile.get(p.getHash())) {
-                        addPlacement(exchange.getPartner(), placement);
+                    for (final Map.Entry<ServerPlacement, ExchangeTarget> waiting : downloadingFile.get(p.getHash()).entrySet()) {
+                        addPlacement(waiting.getValue(), waiting.getKey());
                     }
                 }
+                downloadingFile.remove(p.getHash());
             } else {
                 cancelShare(exchange.getPartner(), p);
-                if (downloadingFile.containsKey(p.getHash())) {
-                    for (final ServerPlacement placement : downloadingFile.get(p.getHash())) {
-                        cancelShare(exchange.getPartner(), placement);
-                    }
+                final Map<ServerPlacement, ExchangeTarget> waiting = downloadingFile.remove(p.getHash());
+                if (waiting != null) {
+                    retryDownload(waiting, exchange.getPartner());
                 }
             }
-
-            downloadingFile.remove(p.getHash());
             return;
         }
         if (exchange instanceof VersionHandshakeServer && exchange.isSuccessful()) {
@@ -169,28 +213,53 @@ public class ServerCommunicationManager extends CommunicationManager {
         }
         if (exchange instanceof ModifyExchangeServer && exchange.isSuccessful()) {
             final ServerPlacement placement = ((ModifyExchangeServer) exchange).getPlacement();
+            // keyed by CORE_EX, the only feature that changes the encoding of the placement
+            final Map<Boolean, PacketByteBuf> modifyPackets = new HashMap<>();
+            final Map<Boolean, PacketByteBuf> metaDataPackets = new HashMap<>();
+            PacketByteBuf removePacket = null;
             for (final ExchangeTarget client : broadcastTargets) {
+                // the modifying player already holds the new position
+                if (client != exchange.getPartner() && !isInterested(client, placement)) {
+                    defer(client, placement);
+                    continue;
+                }
+                final Set<UUID> withheld = deferred.get(client);
+                if (withheld != null && withheld.remove(placement.getId())) {
+                    // the client holds an outdated copy, so it gets the whole placement instead of the modification
+                    sendPlacements(client, Collections.singleton(placement.getId()));
+                    continue;
+                }
+                final boolean coreEx = client.getFeatureSet().hasFeature(Feature.CORE_EX);
                 if (client.getFeatureSet().hasFeature(Feature.MODIFY)) {
                     
-                    final PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
-                    buf.writeUuid(placement.getId());
-                    putPositionData(placement, buf, client);
-                    if (client.getFeatureSet().hasFeature(Feature.CORE_EX)) {
-                        buf.writeUuid(placement.getLastModifiedBy().uuid);
-                        buf.writeString(placement.getLastModifiedBy().getName());
-                    }
-                    client.sendPacket(PacketType.MODIFY.identifier, buf, context);
+                    final PacketByteBuf buf = modifyPackets.computeIfAbsent(coreEx, key -> {
+                        final PacketByteBuf encoded = new PacketByteBuf(Unpooled.buffer());
+                        encoded.writeUuid(placement.getId());
+                        putPositionData(placement, encoded, client);
+                        if (coreEx) {
+                            encoded.writeUuid(placement.getLastModifiedBy().uuid);
+                            encoded.writeString(placement.getLastModifiedBy().getName());
+                        }
+                        return encoded;
+                    });
+                    client.sendPacket(PacketType.MODIFY.identifier, share(buf), context);
                 } else {
                     
                     
-                    final PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
-                    buf.writeUuid(placement.getId());
-                    client.sendPacket(PacketType.REMOVE_SYNCMATIC.identifier, buf, context);
-                    final PacketByteBuf buf2 = new PacketByteBuf(Unpooled.buffer());
-                    putMetaData(placement, buf2, client);
-                    client.sendPacket(PacketType.REGISTER_METADATA.identifier, buf2, context);
+                    if (removePacket == null) {
+                        removePacket = new PacketByteBuf(Unpooled.buffer());
+                        removePacket.writeUuid(placement.getId());
+                    }
+                    client.sendPacket(PacketType.REMOVE_SYNCMATIC.identifier, share(removePacket), context);
+                    final PacketByteBuf buf2 = metaDataPackets.computeIfAbsent(coreEx, key -> encodeMetaData(placement, client));
+                    client.sendPacket(PacketType.REGISTER_METADATA.identifier, share(buf2), context);
                 }
             }
+            release(modifyPackets.values());
+            release(metaDataPackets.values());
+            if (removePacket != null) {
+                removePacket.release();
+            }
         }
     }
 
@@ -200,8 +269,142 @@ public class ServerCommunicationManager extends CommunicationManager {
             return;
         }
         context.getSyncmaticManager().addPlacement(placement);
+        final Map<Boolean, PacketByteBuf> metaDataPackets = new HashMap<>();
         for (final ExchangeTarget target : broadcastTargets) {
-            sendMetaData(placement, target);
+            // the sharing player finishes its share on the metadata, so it is never withheld from it
+            if (target == t || isInterested(target, placement)) {
+                final boolean coreEx = target.getFeatureSet().hasFeature(Feature.CORE_EX);
+                final PacketByteBuf buf = metaDataPackets.computeIfAbsent(coreEx, key -> encodeMetaData(placement, target));
+                target.sendPacket(PacketType.REGISTER_METADATA.identifier, share(buf), context);
+            } else {
+                defer(target, placement);
+            }
+        }
+        release(metaDataPackets.values());
+    }
+
+    private PacketByteBuf encodeMetaData(final ServerPlacement placement, final ExchangeTarget target) {
+        final PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        putMetaData(placement, buf, target);
+        return buf;
+    }
+
+    // a broadcast is encoded once per variant, every recipient gets its own reference to the same bytes
+    // so one recipient releasing its packet cannot free the buffer for the others
+    private static PacketByteBuf share(final PacketByteBuf encoded) {
+        return new PacketByteBuf(encoded.retainedDuplicate());
+    }
+
+    // drops the reference the broadcast held, the recipients keep theirs
+    private static void release(final Collection<PacketByteBuf> encoded) {
+        for (final PacketByteBuf buf : encoded) {
+            buf.release();
+        }
+    }
+
+    // without interest management, or for clients that cannot handle withheld placements, every player is interested
+    private boolean isInterested(final ExchangeTarget client, final ServerPlacement placement) {
+        if (!context.getSyncService().isInterestManagement() || !client.getFeatureSet().hasFeature(Feature.INTEREST)) {
+            return true;
+        }
+        final ServerPlayerEntity player = playerMap.get(client);
+        if (player == null) {
+            return true;
+        }
+        if (!player.getServerWorld().getRegistryKey().getValue().toString().equals(placement.getDimension())) {
+            return false;
+        }
+        Box bounds = context.getSyncmaticManager().getSpatialIndex().getBounds(placement.getId());
+        if (bounds == null) {
+            bounds = Box.of(placement.getPosition(), placement.getPosition());
+        }
+        final double radius = context.getSyncService().getInterestRadius();
+        return bounds.getSquaredDistance(player.getBlockPos()) <= radius * radius;
+    }
+
+    // the client only learns that its copy is outdated, a placement is invalidated once until it is sent again
+    private void defer(final ExchangeTarget client, final ServerPlacement placement) {
+        if (deferred.computeIfAbsent(client, key -> new HashSet<>()).add(placement.getId())) {
+            final PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+            buf.writeUuid(placement.getId());
+            client.sendPacket(PacketType.PLACEMENT_STALE.identifier, buf, context);
+        }
+    }
+
+    private void sendInterested() {
+        for (final Map.Entry<ExchangeTarget, Set<UUID>> entry : deferred.entrySet()) {
+            final Collection<UUID> ready = new ArrayList<>();
+            final Iterator<UUID> iterator = entry.getValue().iterator();
+            while (iterator.hasNext()) {
+                final ServerPlacement placement = context.getSyncmaticManager().getPlacement(iterator.next());
+                if (placement == null) {
+                    iterator.remove();
+                } else if (isInterested(entry.getKey(), placement)) {
+                    ready.add(placement.getId());
+                    iterator.remove();
+                }
+            }
+            if (!ready.isEmpty()) {
+                sendPlacements(entry.getKey(), ready);
+            }
+        }
+    }
+
+    // sends the placements as SYNC_PLACEMENTS pages, ids that no longer exist are sent as removals
+    private void sendPlacements(final ExchangeTarget target, final Collection<UUID> ids) {
+        final Collection<UUID> removed = new ArrayList<>();
+        final Collection<ServerPlacement> placements = new ArrayList<>();
+        for (final UUID placementId : ids) {
+            final ServerPlacement placement = context.getSyncmaticManager().getPlacement(placementId);
+            if (placement == null) {
+                removed.add(placementId);
+            } else {
+                placements.add(placement);
+            }
+        }
+        final int pageBytes = context.getSyncService().getPageBytes();
+        final Iterator<ServerPlacement> iterator = placements.iterator();
+        boolean first = true;
+        while (first || iterator.hasNext()) {
+            final PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+            buf.writeInt(first ? removed.size() : 0);
+            if (first) {
+                for (final UUID placementId : removed) {
+                    buf.writeUuid(placementId);
+                }
+            }
+            final int countIndex = buf.writerIndex();
+            buf.writeInt(0);
+            int count = 0;
+            while (buf.writerIndex() < pageBytes && iterator.hasNext()) {
+                putMetaData(iterator.next(), buf, target);
+                count++;
+            }
+            buf.setInt(countIndex, count);
+            target.sendPacket(PacketType.SYNC_PLACEMENTS.identifier, buf, context);
+            first = false;
+        }
+    }
+
+    // the file is still wanted by the other players that shared it, so fetch it from one of them instead
+    private void retryDownload(final Map<ServerPlacement, ExchangeTarget> waiting, final ExchangeTarget failed) {
+        final Iterator<Map.Entry<ServerPlacement, ExchangeTarget>> iterator = waiting.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<ServerPlacement, ExchangeTarget> next = iterator.next();
+            iterator.remove();
+            if (!next.getValue().equals(failed) && broadcastTargets.contains(next.getValue())) {
+                if (!waiting.isEmpty()) {
+                    downloadingFile.put(next.getKey().getHash(), waiting);
+                }
+                try {
+                    download(next.getKey(), next.getValue());
+                    return;
+                } catch (final Exception e) {
+                    e.printStackTrace();
+                    downloadingFile.remove(next.getKey().getHash());
+                }
+            }
+            cancelShare(next.getValue(), next.getKey());
         }
     }
 
@@ -1,39 +1,105 @@
 package ch.endte.syncmatica.communication.exchange;
 
 import ch.endte.syncmatica.Context;
+import ch.endte.syncmatica.Feature;
 import ch.endte.syncmatica.ServerPlacement;
 import ch.endte.syncmatica.communication.ExchangeTarget;
+import ch.endte.syncmatica.communication.FeatureSet;
 import ch.endte.syncmatica.communication.MessageType;
 import ch.endte.syncmatica.communication.PacketType;
 import ch.endte.syncmatica.communication.ServerCommunicationManager;
+import ch.endte.syncmatica.service.TransferService;
 import io.netty.buffer.Unpooled;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.EnumSet;
 import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 public class DownloadExchange extends AbstractExchange {
 
+    private static final Collection<PacketType> ROUTED_PACKETS = EnumSet.of(
+            PacketType.SEND_LITEMATIC,
+            PacketType.FINISHED_LITEMATIC,
+            PacketType.CANCEL_LITEMATIC
+    );
+
+    // codec and raw length in front of the data of a compressed chunk
+    private static final int FRAME_HEADER_SIZE = 5;
+
     private final ServerPlacement toDownload;
     private final OutputStream outputStream;
     private final MessageDigest md5;
     private final File downloadFile;
+    private final File partialFile;
+    private final boolean windowed;
+    private final boolean resumable;
+    private final boolean compressed;
+    private Inflater inflater = null;
+    private byte[] rawBuffer = null;
+    private final long resumeOffset;
+    private boolean keepPartial;
     private int bytesSent;
+    private int chunksReceived;
 
-    public DownloadExchange(final ServerPlacement syncmatic, final File downloadFile, final ExchangeTarget partner, final Context context) throws IOException, NoSuchAlgorithmException {
+    public DownloadExchange(final ServerPlacement syncmatic, final File downloadFile, final File partialFile, final ExchangeTarget partner, final Context context) throws IOException, NoSuchAlgorithmException {
         super(partner, context);
         this.downloadFile = downloadFile;
-        final OutputStream os = new FileOutputStream(downloadFile); 
+        this.partialFile = partialFile;
         toDownload = syncmatic;
-        md5 = MessageDigest.getInstance("MD5");
-        outputStream = new DigestOutputStream(os, md5);
+        final FeatureSet partnerFeatures = partner.getFeatureSet();
+        windowed = partnerFeatures != null && partnerFeatures.hasFeature(Feature.WINDOWED_TRANSFER);
+        resumable = partnerFeatures != null && partnerFeatures.hasFeature(Feature.RESUME);
+        compressed = partnerFeatures != null && partnerFeatures.hasFeature(Feature.COMPRESSION);
+        keepPartial = resumable;
+
+        MessageDigest digest = null;
+        if (resumable && partialFile.isFile() && partialFile.length() > 0) {
+            digest = getManager().takePartialDigest(syncmatic, partialFile.length());
+            if (digest == null) {
+                digest = digestFile(partialFile);
+            }
+        }
+        if (digest != null) {
+            resumeOffset = partialFile.length();
+            md5 = digest;
+            outputStream = new DigestOutputStream(new FileOutputStream(partialFile, true), md5);
+        } else {
+            resumeOffset = 0;
+            md5 = MessageDigest.getInstance("MD5");
+            outputStream = new DigestOutputStream(new FileOutputStream(partialFile), md5);
+        }
+        // the quota covers the whole file, not just the part sent in this attempt
+        bytesSent = (int) Math.min(resumeOffset, Integer.MAX_VALUE);
+    }
+
+    private static MessageDigest digestFile(final File file) throws NoSuchAlgorithmException {
+        final MessageDigest digest = MessageDigest.getInstance("MD5");
+        final byte[] buffer = new byte[65536];
+        try (final InputStream is = new FileInputStream(file)) {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (final IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return digest;
     }
 
     @Override
@@ -46,12 +112,34 @@ public class DownloadExchange extends AbstractExchange {
         return false;
     }
 
+    @Override
+    public UUID getRoutingId() {
+        return toDownload.getId();
+    }
+
+    @Override
+    public Collection<PacketType> getRoutedPackets() {
+        return ROUTED_PACKETS;
+    }
+
     @Override
     public void handle(final Identifier id, final PacketByteBuf packetBuf) {
         packetBuf.readUuid(); 
         if (id.equals(PacketType.SEND_LITEMATIC.identifier)) {
             final int size = packetBuf.readInt();
-            bytesSent += size;
+            // quota is about stored data, so a frame counts with the bytes it actually writes
+            final int written;
+            try {
+                if (size < 0 || size > packetBuf.readableBytes() - (compressed ? FRAME_HEADER_SIZE : 0)) {
+                    throw new DataFormatException("Invalid chunk[size=" + size + "]");
+                }
+                written = compressed ? decodeFrame(packetBuf, size) : size;
+            } catch (final DataFormatException e) {
+                close(true);
+                e.printStackTrace();
+                return;
+            }
+            bytesSent += written;
             if (getContext().isServer() && getContext().getQuotaService().isOverQuota(getPartner(), bytesSent)) {
                 close(true);
                 ((ServerCommunicationManager) getContext().getCommunicationManager()).sendMessage(
@@ -59,45 +147,105 @@ public class DownloadExchange extends AbstractExchange {
                         MessageType.ERROR,
                         "syncmatica.error.cancelled_transmit_exceed_quota"
                 );
+                return;
             }
             try {
-                packetBuf.readBytes(outputStream, size);
+                if (compressed) {
+                    outputStream.write(rawBuffer, 0, written);
+                } else {
+                    packetBuf.readBytes(outputStream, size);
+                }
             } catch (final IOException e) {
                 close(true);
                 e.printStackTrace();
                 return;
             }
+            chunksReceived++;
             final PacketByteBuf packetByteBuf = new PacketByteBuf(Unpooled.buffer());
             packetByteBuf.writeUuid(toDownload.getId());
+            if (windowed) {
+                packetByteBuf.writeInt(chunksReceived);
+            }
             getPartner().sendPacket(PacketType.RECEIVED_LITEMATIC.identifier, packetByteBuf, getContext());
             return;
         }
         if (id.equals(PacketType.FINISHED_LITEMATIC.identifier)) {
             try {
-                outputStream.flush();
+                outputStream.close();
             } catch (final IOException e) {
                 close(false);
                 e.printStackTrace();
                 return;
             }
             final UUID downloadHash = UUID.nameUUIDFromBytes(md5.digest());
-            if (downloadHash.equals(toDownload.getHash())) {
-                succeed();
-            } else {
-                
+            if (!downloadHash.equals(toDownload.getHash())) {
+                keepPartial = false;
                 close(false);
+                return;
             }
+            try {
+                Files.move(partialFile.toPath(), downloadFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (final IOException e) {
+                e.printStackTrace();
+                close(false);
+                return;
+            }
+            succeed();
             return;
         }
         if (id.equals(PacketType.CANCEL_LITEMATIC.identifier)) {
+            // a resume that is refused before any data arrived means the partial file is unusable
+            if (resumeOffset > 0 && chunksReceived == 0) {
+                keepPartial = false;
+            }
             close(false);
         }
     }
 
+    // decodes the frame into rawBuffer and returns how many bytes of it belong to the file
+    // the header is only trusted as far as it matches the data, so it cannot hide bytes from the quota
+    private int decodeFrame(final PacketByteBuf packetBuf, final int size) throws DataFormatException {
+        final byte codec = packetBuf.readByte();
+        final int rawLength = packetBuf.readInt();
+        if (rawLength < 0 || rawLength > TransferService.MAX_CLIENTBOUND_CHUNK_SIZE) {
+            throw new DataFormatException("Invalid frame[rawLength=" + rawLength + "]");
+        }
+        if (codec == LitematicFrames.CODEC_RAW) {
+            if (rawLength != size) {
+                throw new DataFormatException("Raw frame[size=" + size + ", rawLength=" + rawLength + "]");
+            }
+            ensureRawBuffer(size);
+            packetBuf.readBytes(rawBuffer, 0, size);
+            return size;
+        }
+        if (codec != LitematicFrames.CODEC_DEFLATE) {
+            throw new DataFormatException("Unknown frame[codec=" + codec + ", rawLength=" + rawLength + "]");
+        }
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        ensureRawBuffer(rawLength);
+        final byte[] data = new byte[size];
+        packetBuf.readBytes(data);
+        LitematicFrames.inflate(inflater, data, rawBuffer, rawLength);
+        return rawLength;
+    }
+
+    private void ensureRawBuffer(final int length) {
+        if (rawBuffer == null || rawBuffer.length < length) {
+            rawBuffer = new byte[length];
+        }
+    }
+
     @Override
     public void init() {
         final PacketByteBuf packetByteBuf = new PacketByteBuf(Unpooled.buffer());
         packetByteBuf.writeUuid(toDownload.getId());
+        if (resumeOffset > 0) {
+            packetByteBuf.writeLong(resumeOffset);
+            getPartner().sendPacket(PacketType.REQUEST_LITEMATIC_RESUME.identifier, packetByteBuf, getContext());
+            return;
+        }
         getPartner().sendPacket(PacketType.REQUEST_LITEMATIC.identifier, packetByteBuf, getContext());
     }
 
@@ -112,9 +260,24 @@ public class DownloadExchange extends AbstractExchange {
         } catch (final IOException e) {
             e.printStackTrace();
         }
+        if (inflater != null) {
+            inflater.end();
+        }
         if (!isSuccessful() && downloadFile.exists()) {
             downloadFile.delete(); 
         }
+        if (isSuccessful()) {
+            return;
+        }
+        if (keepPartial && partialFile.length() > 0) {
+            try {
+                getManager().setPartialDigest(toDownload, (MessageDigest) md5.clone(), partialFile.length());
+            } catch (final CloneNotSupportedException e) {
+                // the digest gets rebuilt from the partial file on the next attempt
+            }
+        } else if (partialFile.exists()) {
+            partialFile.delete();
+        }
     }
 
     @Override
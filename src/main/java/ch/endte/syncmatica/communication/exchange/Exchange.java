@@ -2,9 +2,14 @@ package ch.endte.syncmatica.communication.exchange;
 
 import ch.endte.syncmatica.Context;
 import ch.endte.syncmatica.communication.ExchangeTarget;
+import ch.endte.syncmatica.communication.PacketType;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+
 
 
 
@@ -30,6 +35,16 @@ public interface Exchange {
     
     boolean checkPacket(Identifier id, PacketByteBuf packetBuf);
 
+    // exchanges about a single placement name it here, packets starting with that id
+    // and of one of the routed types are then handed to them without asking checkPacket
+    default UUID getRoutingId() {
+        return null;
+    }
+
+    default Collection<PacketType> getRoutedPackets() {
+        return Collections.emptySet();
+    }
+
     
     void handle(Identifier id, PacketByteBuf packetBuf);
 
@@ -0,0 +1,212 @@
+package ch.endte.syncmatica.communication.exchange;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// compressed chunks of a litematic as they are sent over the wire
+// the server keeps them in <hash>.frames next to the litematic so repeated downloads skip the compression
+class LitematicFrames {
+
+    static final byte CODEC_RAW = 0;
+    static final byte CODEC_DEFLATE = 1;
+
+    private static final int MAGIC = 0x53594D46;
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 9;
+    private static final int FRAME_HEADER_SIZE = 9;
+
+    private LitematicFrames() {
+    }
+
+    static File getFramesFile(final File litematic, final UUID hash) {
+        return new File(litematic.getParentFile(), hash.toString() + ".frames");
+    }
+
+    // returns the compressed length or -1 if compression does not make the chunk smaller
+    static int deflate(final Deflater deflater, final byte[] raw, final int rawLength, final byte[] out) {
+        deflater.reset();
+        deflater.setInput(raw, 0, rawLength);
+        deflater.finish();
+        final int length = deflater.deflate(out, 0, Math.min(out.length, rawLength - 1));
+        if (!deflater.finished()) {
+            return -1;
+        }
+        return length;
+    }
+
+    static void inflate(final Inflater inflater, final byte[] data, final byte[] out, final int rawLength) throws DataFormatException {
+        inflater.reset();
+        inflater.setInput(data);
+        final int length = inflater.inflate(out, 0, rawLength);
+        if (length != rawLength || !inflater.finished()) {
+            throw new DataFormatException("Frame does not match its raw length");
+        }
+    }
+
+    // frames are read through the channel into a reused pooled direct buffer, the file is not mapped
+    // so it does not stay locked and a truncated file ends in an IOException instead of a fault
+    static class Reader {
+        private final FileChannel channel;
+        private final int chunkSize;
+        private final ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        private final ByteBuf data;
+        private byte codec;
+        private int rawLength;
+
+        private Reader(final FileChannel channel, final int chunkSize) {
+            this.channel = channel;
+            this.chunkSize = chunkSize;
+            data = PooledByteBufAllocator.DEFAULT.directBuffer(chunkSize);
+        }
+
+        // returns null if there is no usable frame file for this chunk size
+        static Reader open(final File framesFile, final int chunkSize) {
+            if (!framesFile.isFile()) {
+                return null;
+            }
+            FileChannel channel = null;
+            try {
+                channel = FileChannel.open(framesFile.toPath(), StandardOpenOption.READ);
+                final ByteBuffer fileHeader = ByteBuffer.allocate(HEADER_SIZE);
+                if (readFully(channel, fileHeader)) {
+                    fileHeader.flip();
+                    if (fileHeader.getInt() == MAGIC && fileHeader.get() == VERSION && fileHeader.getInt() == chunkSize) {
+                        final Reader reader = new Reader(channel, chunkSize);
+                        channel = null;
+                        return reader;
+                    }
+                }
+            } catch (final IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (final IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+            return null;
+        }
+
+        // returns false once all frames have been read
+        boolean next() throws IOException {
+            header.clear();
+            final int headerRead = channel.read(header);
+            if (headerRead == -1) {
+                return false;
+            }
+            if (header.hasRemaining() && !readFully(channel, header)) {
+                throw new IOException("Truncated frame header");
+            }
+            header.flip();
+            codec = header.get();
+            rawLength = header.getInt();
+            final int length = header.getInt();
+            if (length < 0 || length > chunkSize) {
+                throw new IOException("Invalid frame length " + length);
+            }
+            data.clear();
+            while (data.writerIndex() < length) {
+                if (data.writeBytes(channel, length - data.writerIndex()) == -1) {
+                    throw new IOException("Truncated frame");
+                }
+            }
+            return true;
+        }
+
+        byte getCodec() {
+            return codec;
+        }
+
+        int getRawLength() {
+            return rawLength;
+        }
+
+        // only valid until the next frame is read
+        ByteBuf getData() {
+            return data;
+        }
+
+        void close() {
+            data.release();
+            try {
+                channel.close();
+            } catch (final IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        // returns false if the channel ends before the buffer is full
+        private static boolean readFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static class Writer {
+        private final File framesFile;
+        private final File tempFile;
+        private final DataOutputStream out;
+
+        Writer(final File framesFile, final int chunkSize) throws IOException {
+            this.framesFile = framesFile;
+            tempFile = File.createTempFile(framesFile.getName(), ".tmp", framesFile.getParentFile());
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(chunkSize);
+        }
+
+        void write(final byte codec, final int rawLength, final byte[] data, final int length) throws IOException {
+            out.writeByte(codec);
+            out.writeInt(rawLength);
+            out.writeInt(length);
+            out.write(data, 0, length);
+        }
+
+        void commit() {
+            try {
+                out.close();
+                try {
+                    Files.move(tempFile.toPath(), framesFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (final AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile.toPath(), framesFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (final IOException e) {
+                e.printStackTrace();
+                tempFile.delete();
+            }
+        }
+
+        void abort() {
+            try {
+                out.close();
+            } catch (final IOException e) {
+                e.printStackTrace();
+            }
+            tempFile.delete();
+        }
+    }
+}
@@ -13,8 +13,14 @@ import io.netty.buffer.Unpooled;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.UUID;
+
 public class ModifyExchangeClient extends AbstractExchange {
 
+    private static final Collection<PacketType> ROUTED_PACKETS = EnumSet.of(PacketType.MODIFY_REQUEST_DENY, PacketType.MODIFY_REQUEST_ACCEPT);
+
     
     private boolean expectRemove = false;
 
@@ -37,6 +43,16 @@ public class ModifyExchangeClient extends AbstractExchange {
         return false;
     }
 
+    @Override
+    public UUID getRoutingId() {
+        return placement.getId();
+    }
+
+    @Override
+    public Collection<PacketType> getRoutedPackets() {
+        return ROUTED_PACKETS;
+    }
+
     @Override
     public void handle(final Identifier id, final PacketByteBuf packetBuf) {
         if (id.equals(PacketType.MODIFY_REQUEST_DENY.identifier)) {
@@ -106,6 +122,8 @@ public class ModifyExchangeClient extends AbstractExchange {
             buf.writeUuid(placement.getId());
             getPartner().sendPacket(PacketType.REMOVE_SYNCMATIC.identifier, buf, getContext());
             expectRemove = true;
+            // only from now on a removal of the placement belongs to this exchange
+            getPartner().addRoute(PacketType.REMOVE_SYNCMATIC, placement.getId(), this);
         }
     }
 
@@ -9,6 +9,8 @@ import io.netty.buffer.Unpooled;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.UUID;
 
 public class ModifyExchangeServer extends AbstractExchange {
@@ -27,6 +29,16 @@ public class ModifyExchangeServer extends AbstractExchange {
         return id.equals(PacketType.MODIFY_FINISH.identifier) && checkUUID(packetBuf, placement.getId());
     }
 
+    @Override
+    public UUID getRoutingId() {
+        return placementId;
+    }
+
+    @Override
+    public Collection<PacketType> getRoutedPackets() {
+        return Collections.singleton(PacketType.MODIFY_FINISH);
+    }
+
     @Override
     public void handle(final Identifier id, final PacketByteBuf packetBuf) {
         packetBuf.readUuid(); 
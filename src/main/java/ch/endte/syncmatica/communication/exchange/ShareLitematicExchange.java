@@ -13,9 +13,19 @@ import net.minecraft.util.Identifier;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.UUID;
 
 public class ShareLitematicExchange extends AbstractExchange {
 
+    private static final Collection<PacketType> ROUTED_PACKETS = EnumSet.of(
+            PacketType.REQUEST_LITEMATIC,
+            PacketType.REQUEST_LITEMATIC_RESUME,
+            PacketType.REGISTER_METADATA,
+            PacketType.CANCEL_SHARE
+    );
+
     private final SchematicPlacement schematicPlacement;
     private final ServerPlacement toShare;
     private final File toUpload;
@@ -34,6 +44,7 @@ public class ShareLitematicExchange extends AbstractExchange {
     @Override
     public boolean checkPacket(final Identifier id, final PacketByteBuf packetBuf) {
         if (id.equals(PacketType.REQUEST_LITEMATIC.identifier)
+                || id.equals(PacketType.REQUEST_LITEMATIC_RESUME.identifier)
                 || id.equals(PacketType.REGISTER_METADATA.identifier)
                 || id.equals(PacketType.CANCEL_SHARE.identifier)) {
             return AbstractExchange.checkUUID(packetBuf, toShare.getId());
@@ -41,13 +52,25 @@ public class ShareLitematicExchange extends AbstractExchange {
         return false;
     }
 
+    @Override
+    public UUID getRoutingId() {
+        return toShare.getId();
+    }
+
+    @Override
+    public Collection<PacketType> getRoutedPackets() {
+        return ROUTED_PACKETS;
+    }
+
     @Override
     public void handle(final Identifier id, final PacketByteBuf packetBuf) {
-        if (id.equals(PacketType.REQUEST_LITEMATIC.identifier)) {
+        if (id.equals(PacketType.REQUEST_LITEMATIC.identifier)
+                || id.equals(PacketType.REQUEST_LITEMATIC_RESUME.identifier)) {
             packetBuf.readUuid();
+            final long offset = id.equals(PacketType.REQUEST_LITEMATIC_RESUME.identifier) ? packetBuf.readLong() : 0;
             final UploadExchange upload;
             try {
-                upload = new UploadExchange(toShare, toUpload, getPartner(), getContext());
+                upload = new UploadExchange(toShare, toUpload, offset, getPartner(), getContext());
             } catch (final FileNotFoundException e) {
                 e.printStackTrace();
 
@@ -1,14 +1,22 @@
 package ch.endte.syncmatica.communication.exchange;
 
 import ch.endte.syncmatica.Context;
+import ch.endte.syncmatica.Feature;
 import ch.endte.syncmatica.ServerPlacement;
 import ch.endte.syncmatica.communication.ExchangeTarget;
+import ch.endte.syncmatica.communication.FeatureSet;
 import ch.endte.syncmatica.communication.PacketType;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 
 import java.io.*;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.UUID;
+import java.util.zip.Deflater;
 
 
 
@@ -18,15 +26,48 @@ public class UploadExchange extends AbstractExchange {
     
     
     private static final int BUFFER_SIZE = 16384;
+    private static final Collection<PacketType> ROUTED_PACKETS = EnumSet.of(PacketType.RECEIVED_LITEMATIC, PacketType.CANCEL_LITEMATIC);
 
     private final ServerPlacement toUpload;
-    private final InputStream inputStream;
-    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final File uploadFile;
+    private final FileInputStream inputStream;
+    private final long offset;
+    // file data is read into this reused pooled direct buffer, the packet gets its own copy since it outlives the exchange
+    private ByteBuf readBuffer = null;
+    private final byte[] buffer;
+    private final boolean windowed;
+    private final int windowSize;
+    private final boolean compressed;
+    private Deflater deflater = null;
+    private byte[] frameBuffer = null;
+    private LitematicFrames.Reader cachedFrames = null;
+    private LitematicFrames.Writer frameWriter = null;
+    private long rawBytesSent = 0;
+    private long wireBytesSent = 0;
+    private int chunksSent = 0;
+    private int chunksAcknowledged = 0;
+    private boolean endOfFile = false;
 
     public UploadExchange(final ServerPlacement syncmatic, final File uploadFile, final ExchangeTarget partner, final Context con) throws FileNotFoundException {
+        this(syncmatic, uploadFile, 0, partner, con);
+    }
+
+    public UploadExchange(final ServerPlacement syncmatic, final File uploadFile, final long offset, final ExchangeTarget partner, final Context con) throws FileNotFoundException {
         super(partner, con);
         toUpload = syncmatic;
+        this.uploadFile = uploadFile;
         inputStream = new FileInputStream(uploadFile);
+        this.offset = offset;
+        final FeatureSet partnerFeatures = partner.getFeatureSet();
+        windowed = partnerFeatures != null && partnerFeatures.hasFeature(Feature.WINDOWED_TRANSFER);
+        compressed = partnerFeatures != null && partnerFeatures.hasFeature(Feature.COMPRESSION);
+        if (windowed) {
+            windowSize = con.getTransferService().getWindowSize();
+            buffer = new byte[con.getTransferService().getChunkSize(partner)];
+        } else {
+            windowSize = 1;
+            buffer = new byte[BUFFER_SIZE];
+        }
     }
 
     @Override
@@ -38,53 +79,175 @@ public class UploadExchange extends AbstractExchange {
         return false;
     }
 
+    @Override
+    public UUID getRoutingId() {
+        return toUpload.getId();
+    }
+
+    @Override
+    public Collection<PacketType> getRoutedPackets() {
+        return ROUTED_PACKETS;
+    }
+
     @Override
     public void handle(final Identifier id, final PacketByteBuf packetBuf) {
 
         packetBuf.readUuid(); 
         if (id.equals(PacketType.RECEIVED_LITEMATIC.identifier)) {
-            send();
+            if (windowed) {
+                // acknowledgements are cumulative so a late one never moves the window backwards
+                chunksAcknowledged = Math.max(chunksAcknowledged, packetBuf.readInt());
+            } else {
+                chunksAcknowledged++;
+            }
+            sendWindow();
         }
         if (id.equals(PacketType.CANCEL_LITEMATIC.identifier)) {
             close(false);
         }
     }
 
-    private void send() {
-        
-        final int bytesRead;
-        try {
-            bytesRead = inputStream.read(buffer);
-        } catch (final IOException e) {
-            close(true);
-            e.printStackTrace();
-            return;
+    // without WINDOWED_TRANSFER the window is a single chunk, which is the original stop-and-wait exchange
+    private void sendWindow() {
+        while (!endOfFile && chunksSent - chunksAcknowledged < windowSize) {
+            try {
+                if (compressed ? sendFrame() : sendChunk()) {
+                    chunksSent++;
+                } else {
+                    endOfFile = true;
+                }
+            } catch (final IOException e) {
+                close(true);
+                e.printStackTrace();
+                return;
+            }
         }
-        if (bytesRead == -1) {
+        if (endOfFile && chunksAcknowledged >= chunksSent) {
             sendFinish();
-        } else {
-            sendData(bytesRead);
         }
     }
 
-    private void sendData(final int bytesRead) {
-        final PacketByteBuf packetByteBuf = new PacketByteBuf(Unpooled.buffer());
+    private boolean sendChunk() throws IOException {
+        readBuffer.clear();
+        final int bytesRead = readBuffer.writeBytes(inputStream.getChannel(), buffer.length);
+        if (bytesRead <= 0) {
+            return false;
+        }
+        final PacketByteBuf packetByteBuf = new PacketByteBuf(Unpooled.buffer(20 + bytesRead));
         packetByteBuf.writeUuid(toUpload.getId());
         packetByteBuf.writeInt(bytesRead);
-        packetByteBuf.writeBytes(buffer, 0, bytesRead);
+        packetByteBuf.writeBytes(readBuffer);
         getPartner().sendPacket(PacketType.SEND_LITEMATIC.identifier, packetByteBuf, getContext());
+        rawBytesSent += bytesRead;
+        wireBytesSent += bytesRead;
+        return true;
+    }
+
+    private boolean sendFrame() throws IOException {
+        if (cachedFrames != null) {
+            if (!cachedFrames.next()) {
+                return false;
+            }
+            writeFrame(cachedFrames.getCodec(), cachedFrames.getRawLength(), Unpooled.copiedBuffer(cachedFrames.getData()));
+            return true;
+        }
+        final int bytesRead = inputStream.read(buffer);
+        if (bytesRead == -1) {
+            if (frameWriter != null) {
+                frameWriter.commit();
+                frameWriter = null;
+            }
+            return false;
+        }
+        final int deflated = LitematicFrames.deflate(deflater, buffer, bytesRead, frameBuffer);
+        final byte codec = deflated == -1 ? LitematicFrames.CODEC_RAW : LitematicFrames.CODEC_DEFLATE;
+        final byte[] data = deflated == -1 ? buffer : frameBuffer;
+        final int length = deflated == -1 ? bytesRead : deflated;
+        if (frameWriter != null) {
+            frameWriter.write(codec, bytesRead, data, length);
+        }
+        // the buffers are reused for the next chunk, so this frame needs its own copy
+        writeFrame(codec, bytesRead, Unpooled.copiedBuffer(data, 0, length));
+        return true;
+    }
+
+    private void writeFrame(final byte codec, final int rawLength, final ByteBuf body) {
+        final int length = body.readableBytes();
+        final PacketByteBuf header = new PacketByteBuf(Unpooled.buffer(25));
+        header.writeUuid(toUpload.getId());
+        header.writeInt(length);
+        header.writeByte(codec);
+        header.writeInt(rawLength);
+        getPartner().sendPacket(PacketType.SEND_LITEMATIC.identifier, new PacketByteBuf(Unpooled.wrappedBuffer(header, body)), getContext());
+        rawBytesSent += rawLength;
+        wireBytesSent += length;
     }
 
     private void sendFinish() {
         final PacketByteBuf packetByteBuf = new PacketByteBuf(Unpooled.buffer());
         packetByteBuf.writeUuid(toUpload.getId());
         getPartner().sendPacket(PacketType.FINISHED_LITEMATIC.identifier, packetByteBuf, getContext());
+        if (compressed) {
+            getContext().getDebugService().logCompression(toUpload.getName(), rawBytesSent, wireBytesSent);
+        }
         succeed();
     }
 
+    // the server serves stored frames when they match the chunk size and records them on the first full upload
+    private void initCompression() {
+        final boolean cacheable = getContext().isServer() && offset % buffer.length == 0;
+        final File framesFile = LitematicFrames.getFramesFile(uploadFile, toUpload.getHash());
+        if (cacheable) {
+            cachedFrames = LitematicFrames.Reader.open(framesFile, buffer.length);
+            boolean usable = cachedFrames != null;
+            try {
+                for (long skipped = 0; usable && skipped < offset; skipped += buffer.length) {
+                    usable = cachedFrames.next();
+                }
+            } catch (final IOException e) {
+                e.printStackTrace();
+                usable = false;
+            }
+            if (usable) {
+                return;
+            }
+            if (cachedFrames != null) {
+                cachedFrames.close();
+                cachedFrames = null;
+            }
+        }
+        deflater = new Deflater();
+        frameBuffer = new byte[buffer.length];
+        if (cacheable && offset == 0) {
+            try {
+                frameWriter = new LitematicFrames.Writer(framesFile, buffer.length);
+            } catch (final IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
     @Override
     public void init() {
-        send();
+        if (offset != 0) {
+            try {
+                if (offset < 0 || offset > inputStream.getChannel().size()) {
+                    close(true);
+                    return;
+                }
+                inputStream.getChannel().position(offset);
+            } catch (final IOException e) {
+                close(true);
+                e.printStackTrace();
+                return;
+            }
+        }
+        if (compressed) {
+            initCompression();
+        } else {
+            readBuffer = PooledByteBufAllocator.DEFAULT.directBuffer(buffer.length);
+        }
+        sendWindow();
     }
 
     @Override
@@ -94,6 +257,19 @@ public class UploadExchange extends AbstractExchange {
         } catch (final IOException e) {
             e.printStackTrace();
         }
+        if (frameWriter != null) {
+            frameWriter.abort();
+        }
+        if (cachedFrames != null) {
+            cachedFrames.close();
+        }
+        if (readBuffer != null) {
+            readBuffer.release();
+            readBuffer = null;
+        }
+        if (deflater != null) {
+            deflater.end();
+        }
     }
 
     @Override
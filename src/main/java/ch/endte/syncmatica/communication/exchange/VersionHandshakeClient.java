@@ -1,7 +1,9 @@
 package ch.endte.syncmatica.communication.exchange;
 
 import ch.endte.syncmatica.Context;
+import ch.endte.syncmatica.Feature;
 import ch.endte.syncmatica.ServerPlacement;
+import ch.endte.syncmatica.SyncmaticManager;
 import ch.endte.syncmatica.Syncmatica;
 import ch.endte.syncmatica.communication.ExchangeTarget;
 import ch.endte.syncmatica.communication.FeatureSet;
@@ -12,9 +14,12 @@ import net.minecraft.network.PacketByteBuf;
 import net.minecraft.util.Identifier;
 import org.apache.logging.log4j.LogManager;
 
+import java.util.UUID;
+
 public class VersionHandshakeClient extends FeatureExchange {
 
     private String partnerVersion;
+    private SyncmaticManager.SyncState syncState = null;
 
     public VersionHandshakeClient(final ExchangeTarget partner, final Context con) {
         super(partner, con);
@@ -23,6 +28,8 @@ public class VersionHandshakeClient extends FeatureExchange {
     @Override
     public boolean checkPacket(final Identifier id, final PacketByteBuf packetBuf) {
         return id.equals(PacketType.CONFIRM_USER.identifier)
+                || id.equals(PacketType.SYNC_PLACEMENTS.identifier)
+                || id.equals(PacketType.SYNC_STATE.identifier)
                 || id.equals(PacketType.REGISTER_VERSION.identifier)
                 || super.checkPacket(id, packetBuf);
     }
@@ -45,6 +52,29 @@ public class VersionHandshakeClient extends FeatureExchange {
                     onFeatureSetReceive();
                 }
             }
+        } else if (id.equals(PacketType.SYNC_STATE.identifier)) {
+            final UUID epoch = packetBuf.readUuid();
+            final long version = packetBuf.readLong();
+            // on a delta the placements of the previous session are the base the following pages apply to
+            if (packetBuf.readBoolean() && syncState != null) {
+                getContext().getSyncmaticManager().restoreSyncState(syncState);
+            }
+            syncState = null;
+            getContext().getSyncmaticManager().setSyncState(getPartner().getPersistentName(), epoch, version);
+        } else if (id.equals(PacketType.SYNC_PLACEMENTS.identifier)) {
+            // a page of a paged sync, the CONFIRM_USER that follows the last page finishes the join
+            final int removedCount = packetBuf.readInt();
+            for (int i = 0; i < removedCount; i++) {
+                final ServerPlacement p = getContext().getSyncmaticManager().getPlacement(packetBuf.readUuid());
+                if (p != null) {
+                    getContext().getSyncmaticManager().removePlacement(p);
+                }
+            }
+            final int placementCount = packetBuf.readInt();
+            for (int i = 0; i < placementCount; i++) {
+                final ServerPlacement p = getManager().receiveMetaData(packetBuf, getPartner());
+                getContext().getSyncmaticManager().addPlacement(p);
+            }
         } else if (id.equals(PacketType.CONFIRM_USER.identifier)) {
             final int placementCount = packetBuf.readInt();
             for (int i = 0; i < placementCount; i++) {
@@ -62,6 +92,16 @@ public class VersionHandshakeClient extends FeatureExchange {
 
     @Override
     public void onFeatureSetReceive() {
+        final FeatureSet fs = getPartner().getFeatureSet();
+        if (fs.hasFeature(Feature.DELTA_SYNC) && fs.hasFeature(Feature.PAGED_SYNC)) {
+            syncState = getContext().getSyncmaticManager().loadSyncState(getPartner().getPersistentName());
+            if (syncState != null) {
+                final PacketByteBuf stateBuf = new PacketByteBuf(Unpooled.buffer());
+                stateBuf.writeUuid(syncState.epoch);
+                stateBuf.writeLong(syncState.version);
+                getPartner().sendPacket(PacketType.SYNC_STATE.identifier, stateBuf, getContext());
+            }
+        }
         final PacketByteBuf newBuf = new PacketByteBuf(Unpooled.buffer());
         newBuf.writeString(Syncmatica.VERSION);
         getPartner().sendPacket(PacketType.REGISTER_VERSION.identifier, newBuf, getContext());
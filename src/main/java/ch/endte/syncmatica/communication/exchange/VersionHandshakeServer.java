@@ -1,21 +1,35 @@
 package ch.endte.syncmatica.communication.exchange;
 
 import ch.endte.syncmatica.Context;
+import ch.endte.syncmatica.Feature;
 import ch.endte.syncmatica.ServerPlacement;
+import ch.endte.syncmatica.SyncmaticManager;
 import ch.endte.syncmatica.Syncmatica;
 import ch.endte.syncmatica.communication.ExchangeTarget;
 import ch.endte.syncmatica.communication.FeatureSet;
 import ch.endte.syncmatica.communication.PacketType;
 import io.netty.buffer.Unpooled;
 import net.minecraft.network.PacketByteBuf;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.math.BlockPos;
 import org.apache.logging.log4j.LogManager;
 
-import java.util.Collection;
+import java.util.*;
+import java.util.function.Consumer;
 
 public class VersionHandshakeServer extends FeatureExchange {
 
     private String partnerVersion;
+    // placements still to be sent in the paged sync, nearest to the player first
+    private Deque<UUID> pending = null;
+    private final Set<UUID> sent = new HashSet<>();
+    private final Set<UUID> removed = new LinkedHashSet<>();
+    private final Consumer<ServerPlacement> syncListener = this::onPlacementUpdate;
+    // the state the client synced to before, only placements changed after baseVersion are sent
+    private UUID syncEpoch = null;
+    private long syncVersion = 0;
+    private long baseVersion = 0;
 
     public VersionHandshakeServer(final ExchangeTarget partner, final Context con) {
         super(partner, con);
@@ -24,6 +38,7 @@ public class VersionHandshakeServer extends FeatureExchange {
     @Override
     public boolean checkPacket(final Identifier id, final PacketByteBuf packetBuf) {
         return id.equals(PacketType.REGISTER_VERSION.identifier)
+                || id.equals(PacketType.SYNC_STATE.identifier)
                 || super.checkPacket(id, packetBuf);
     }
 
@@ -44,6 +59,9 @@ public class VersionHandshakeServer extends FeatureExchange {
                 getPartner().setFeatureSet(fs);
                 onFeatureSetReceive();
             }
+        } else if (id.equals(PacketType.SYNC_STATE.identifier)) {
+            syncEpoch = packetBuf.readUuid();
+            syncVersion = packetBuf.readLong();
         } else {
             super.handle(id, packetBuf);
         }
@@ -53,6 +71,10 @@ public class VersionHandshakeServer extends FeatureExchange {
     @Override
     public void onFeatureSetReceive() {
         LogManager.getLogger(VersionHandshakeServer.class).info("Syncmatica client joining with local version {} and client version {}", Syncmatica.VERSION, partnerVersion);
+        if (getPartner().getFeatureSet().hasFeature(Feature.PAGED_SYNC)) {
+            startPagedSync();
+            return;
+        }
         final PacketByteBuf newBuf = new PacketByteBuf(Unpooled.buffer());
         final Collection<ServerPlacement> l = getContext().getSyncmaticManager().getAll();
         newBuf.writeInt(l.size());
@@ -63,6 +85,105 @@ public class VersionHandshakeServer extends FeatureExchange {
         succeed();
     }
 
+    // sends the next pages of a paged sync, called once per server tick
+    public void tick() {
+        if (pending == null || isFinished()) {
+            return;
+        }
+        final int pages = getContext().getSyncService().getPagesPerTick();
+        for (int i = 0; i < pages && !isFinished(); i++) {
+            sendPage();
+        }
+    }
+
+    // a delta needs the paged sync to carry removals, so DELTA_SYNC only applies together with PAGED_SYNC
+    private void startPagedSync() {
+        pending = new ArrayDeque<>();
+        if (getPartner().getFeatureSet().hasFeature(Feature.DELTA_SYNC)) {
+            final SyncmaticManager man = getContext().getSyncmaticManager();
+            final Collection<UUID> removedSince = man.getEpoch().equals(syncEpoch) ? man.getRemovedSince(syncVersion) : null;
+            if (removedSince != null) {
+                baseVersion = syncVersion;
+                removed.addAll(removedSince);
+            }
+            final PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+            buf.writeUuid(man.getEpoch());
+            buf.writeLong(man.getVersion());
+            buf.writeBoolean(removedSince != null);
+            getPartner().sendPacket(PacketType.SYNC_STATE.identifier, buf, getContext());
+        }
+        getContext().getSyncmaticManager().addServerPlacementConsumer(syncListener);
+        queueUnsent();
+    }
+
+    // changes to placements that were already sent are sent again, other changes are picked up by queueUnsent
+    // removals are always forwarded since a delta client may hold the placement from its previous session
+    private void onPlacementUpdate(final ServerPlacement placement) {
+        if (getContext().getSyncmaticManager().getPlacement(placement.getId()) == null) {
+            sent.remove(placement.getId());
+            removed.add(placement.getId());
+        } else if (sent.remove(placement.getId())) {
+            pending.addFirst(placement.getId());
+        }
+    }
+
+    private boolean queueUnsent() {
+        final List<ServerPlacement> unsent = new ArrayList<>();
+        for (final ServerPlacement p : getContext().getSyncmaticManager().getAll()) {
+            if (!sent.contains(p.getId()) && p.getVersion() > baseVersion) {
+                unsent.add(p);
+            }
+        }
+        final ServerPlayerEntity player = getPartner().serverPlayNetworkHandler.player;
+        final BlockPos position = player.getBlockPos();
+        final String dimension = player.getServerWorld().getRegistryKey().getValue().toString();
+        unsent.sort(Comparator.comparingDouble(p -> p.getDimension().equals(dimension) ? p.getPosition().getSquaredDistance(position) : Double.MAX_VALUE));
+        for (final ServerPlacement p : unsent) {
+            pending.addLast(p.getId());
+        }
+        return !unsent.isEmpty();
+    }
+
+    private void sendPage() {
+        final PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer());
+        final int removedCount = removed.size();
+        buf.writeInt(removedCount);
+        for (final UUID id : removed) {
+            buf.writeUuid(id);
+        }
+        removed.clear();
+        final int countIndex = buf.writerIndex();
+        buf.writeInt(0);
+        int count = 0;
+        final int pageBytes = getContext().getSyncService().getPageBytes();
+        while (buf.writerIndex() < pageBytes && (!pending.isEmpty() || queueUnsent())) {
+            final UUID id = pending.poll();
+            final ServerPlacement p = getContext().getSyncmaticManager().getPlacement(id);
+            if (p == null || !sent.add(id)) {
+                continue;
+            }
+            getManager().putMetaData(p, buf, getPartner());
+            count++;
+        }
+        buf.setInt(countIndex, count);
+        if (count > 0 || removedCount > 0) {
+            getPartner().sendPacket(PacketType.SYNC_PLACEMENTS.identifier, buf, getContext());
+        }
+        if (pending.isEmpty() && !queueUnsent()) {
+            final PacketByteBuf confirm = new PacketByteBuf(Unpooled.buffer());
+            confirm.writeInt(0);
+            getPartner().sendPacket(PacketType.CONFIRM_USER.identifier, confirm, getContext());
+            succeed();
+        }
+    }
+
+    @Override
+    protected void onClose() {
+        if (pending != null) {
+            getContext().getSyncmaticManager().removeServerPlacementConsumer(syncListener);
+        }
+    }
+
     @Override
     public void init() {
         final PacketByteBuf newBuf = new PacketByteBuf(Unpooled.buffer());
@@ -8,8 +8,10 @@ import java.util.stream.Collectors;
 
 import com.google.common.collect.ImmutableList;
 
+import ch.endte.syncmatica.Context;
 import ch.endte.syncmatica.ServerPlacement;
 import ch.endte.syncmatica.ServerPosition;
+import ch.endte.syncmatica.communication.ClientCommunicationManager;
 import ch.endte.syncmatica.litematica.LitematicManager;
 import ch.endte.syncmatica.litematica.ScreenHelper;
 import ch.endte.syncmatica.util.SyncmaticaUtil;
@@ -132,7 +134,10 @@ public class WidgetListSyncmaticaServerPlacement extends WidgetListBase<ServerPl
     @Override
     protected Collection<ServerPlacement> getAllEntries() {
         final ServerPosition playerPosition = LitematicManager.getInstance().getPlayerPosition();
-        final Collection<ServerPlacement> serverPlacements = LitematicManager.getInstance().getActiveContext().getSyncmaticManager().getAll();
+        final Context context = LitematicManager.getInstance().getActiveContext();
+        ((ClientCommunicationManager) context.getCommunicationManager()).fetchStale();
+        final Collection<ServerPlacement> serverPlacements = context.getSyncmaticManager().getAll();
+        context.getLocalStateScanner().scanAll(serverPlacements);
         return serverPlacements.stream().sorted(new PlayerDistanceComparator(playerPosition)).collect(Collectors.toList());
     }
 
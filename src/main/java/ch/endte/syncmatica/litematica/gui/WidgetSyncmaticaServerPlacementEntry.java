@@ -54,8 +54,8 @@ public class WidgetSyncmaticaServerPlacementEntry extends WidgetListEntryBase<Se
         multi.add(new BaseButtonType("syncmatica.gui.button.download"
                 , () -> {
             final Context con = LitematicManager.getInstance().getActiveContext();
-            final LocalLitematicState state = con.getFileStorage().getLocalState(placement);
-            return !state.isLocalFileReady() && state.isReadyForDownload();
+            final LocalLitematicState state = con.getLocalStateScanner().getState(placement);
+            return state != null && !state.isLocalFileReady() && state.isReadyForDownload();
         }, new ButtonListener(ButtonListener.Type.DOWNLOAD, this)));
         multi.add(new BaseButtonType("syncmatica.gui.button.load",
                 () -> !LitematicManager.getInstance().isRendered(placement),
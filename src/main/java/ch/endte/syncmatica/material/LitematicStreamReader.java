@@ -0,0 +1,385 @@
+package ch.endte.syncmatica.material;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 流式读取.litematic文件的NBT数据
+ * 与NbtIo.read不同，这里不会构建完整的NbtCompound树：
+ * 只解码每个区域的BlockStatePalette（仅Name）、BlockStates和尺寸，
+ * TileEntities、Entities、PendingBlockTicks等不需要的标签按长度直接跳过
+ * 区域按顺序逐个回调，因此内存峰值大约只有一个区域的long数组
+ */
+public class LitematicStreamReader {
+    private static final int BUFFER_SIZE = 65536;
+    private static final int MAX_DEPTH = 512;
+
+    private static final byte TAG_END = 0;
+    private static final byte TAG_BYTE = 1;
+    private static final byte TAG_SHORT = 2;
+    private static final byte TAG_INT = 3;
+    private static final byte TAG_LONG = 4;
+    private static final byte TAG_FLOAT = 5;
+    private static final byte TAG_DOUBLE = 6;
+    private static final byte TAG_BYTE_ARRAY = 7;
+    private static final byte TAG_STRING = 8;
+    private static final byte TAG_LIST = 9;
+    private static final byte TAG_COMPOUND = 10;
+    private static final byte TAG_INT_ARRAY = 11;
+    private static final byte TAG_LONG_ARRAY = 12;
+
+    /**
+     * 区域数据回调
+     */
+    public interface RegionVisitor {
+        /**
+         * @param name 区域名称
+         * @param sizeX 区域尺寸，可能为负数（Litematica允许负方向的区域）
+         * @param sizeY 区域尺寸
+         * @param sizeZ 区域尺寸
+         * @param palette 调色板中每一项的方块ID
+         * @param blockStates 打包后的方块状态数组
+         */
+        void visitRegion(String name, int sizeX, int sizeY, int sizeZ, String[] palette, long[] blockStates) throws IOException;
+    }
+
+    /**
+     * 区域布局回调，只包含区域相对投影原点的位置和尺寸
+     */
+    public interface LayoutVisitor {
+        /**
+         * @param name 区域名称
+         * @param posX 区域相对投影原点的位置
+         * @param posY 区域相对投影原点的位置
+         * @param posZ 区域相对投影原点的位置
+         * @param sizeX 区域尺寸，可能为负数
+         * @param sizeY 区域尺寸
+         * @param sizeZ 区域尺寸
+         */
+        void visitLayout(String name, int posX, int posY, int posZ, int sizeX, int sizeY, int sizeZ) throws IOException;
+    }
+
+    private final DataInputStream in;
+    private final byte[] longBuffer = new byte[BUFFER_SIZE];
+
+    private LitematicStreamReader(InputStream in) {
+        this.in = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+    }
+
+    /**
+     * 读取gzip压缩的.litematic文件
+     * @return 是否找到了Regions标签
+     */
+    public static boolean read(File litematicFile, RegionVisitor visitor) throws IOException {
+        try (FileInputStream fis = new FileInputStream(litematicFile);
+             GZIPInputStream gzis = new GZIPInputStream(fis, BUFFER_SIZE)) {
+            return read(gzis, visitor);
+        }
+    }
+
+    /**
+     * 读取已解压的NBT数据流
+     * @return 是否找到了Regions标签
+     */
+    public static boolean read(InputStream nbtStream, RegionVisitor visitor) throws IOException {
+        return new LitematicStreamReader(nbtStream).readRoot(visitor);
+    }
+
+    /**
+     * 只读取每个区域的位置和尺寸，方块数据全部跳过
+     * @return 是否找到了Regions标签
+     */
+    public static boolean readLayout(File litematicFile, LayoutVisitor visitor) throws IOException {
+        try (FileInputStream fis = new FileInputStream(litematicFile);
+             GZIPInputStream gzis = new GZIPInputStream(fis, BUFFER_SIZE)) {
+            return new LitematicStreamReader(gzis).readLayoutRoot(visitor);
+        }
+    }
+
+    private boolean readLayoutRoot(LayoutVisitor visitor) throws IOException {
+        byte rootType = in.readByte();
+        if (rootType != TAG_COMPOUND) {
+            return false;
+        }
+        in.readUTF();
+
+        boolean regionsFound = false;
+        byte type;
+        while ((type = in.readByte()) != TAG_END) {
+            String key = in.readUTF();
+            if (type == TAG_COMPOUND && key.equals("Regions")) {
+                readRegionLayouts(visitor);
+                regionsFound = true;
+            } else {
+                skipPayload(type, 0);
+            }
+        }
+        return regionsFound;
+    }
+
+    private void readRegionLayouts(LayoutVisitor visitor) throws IOException {
+        byte type;
+        while ((type = in.readByte()) != TAG_END) {
+            String regionName = in.readUTF();
+            if (type != TAG_COMPOUND) {
+                skipPayload(type, 1);
+                continue;
+            }
+            int[] position = null;
+            int[] size = null;
+            byte childType;
+            while ((childType = in.readByte()) != TAG_END) {
+                String key = in.readUTF();
+                if (key.equals("Position") && childType == TAG_COMPOUND) {
+                    position = readVec3Compound();
+                } else if (key.equals("Size") && childType == TAG_COMPOUND) {
+                    size = readVec3Compound();
+                } else {
+                    skipPayload(childType, 2);
+                }
+            }
+            if (position != null && size != null) {
+                visitor.visitLayout(regionName, position[0], position[1], position[2], size[0], size[1], size[2]);
+            }
+        }
+    }
+
+    private boolean readRoot(RegionVisitor visitor) throws IOException {
+        byte rootType = in.readByte();
+        if (rootType != TAG_COMPOUND) {
+            return false;
+        }
+        in.readUTF();
+
+        boolean regionsFound = false;
+        byte type;
+        while ((type = in.readByte()) != TAG_END) {
+            String key = in.readUTF();
+            if (type == TAG_COMPOUND && key.equals("Regions")) {
+                readRegions(visitor);
+                regionsFound = true;
+            } else {
+                skipPayload(type, 0);
+            }
+        }
+        return regionsFound;
+    }
+
+    private void readRegions(RegionVisitor visitor) throws IOException {
+        byte type;
+        while ((type = in.readByte()) != TAG_END) {
+            String regionName = in.readUTF();
+            if (type == TAG_COMPOUND) {
+                readRegion(regionName, visitor);
+            } else {
+                skipPayload(type, 1);
+            }
+        }
+    }
+
+    private void readRegion(String regionName, RegionVisitor visitor) throws IOException {
+        // 区域内标签的顺序不固定，先暂存需要的数据，读到区域结尾时再回调
+        String[] palette = null;
+        long[] blockStates = null;
+        int[] size = null;
+        int sizeX = 0, sizeY = 0, sizeZ = 0;
+        int separateSizeMask = 0;
+
+        byte type;
+        while ((type = in.readByte()) != TAG_END) {
+            String key = in.readUTF();
+            if (key.equals("BlockStatePalette") && type == TAG_LIST) {
+                palette = readPalette();
+            } else if (key.equals("BlockStates") && type == TAG_LONG_ARRAY) {
+                blockStates = readLongArray();
+            } else if (key.equals("Size") && type == TAG_COMPOUND) {
+                size = readVec3Compound();
+            } else if (key.equals("Size") && type == TAG_LIST) {
+                size = readIntList();
+            } else if (key.equals("SizeX") && type == TAG_INT) {
+                sizeX = in.readInt();
+                separateSizeMask |= 1;
+            } else if (key.equals("SizeY") && type == TAG_INT) {
+                sizeY = in.readInt();
+                separateSizeMask |= 2;
+            } else if (key.equals("SizeZ") && type == TAG_INT) {
+                sizeZ = in.readInt();
+                separateSizeMask |= 4;
+            } else {
+                skipPayload(type, 2);
+            }
+        }
+
+        if (palette == null || blockStates == null) {
+            return;
+        }
+        if (size != null && size.length >= 3) {
+            visitor.visitRegion(regionName, size[0], size[1], size[2], palette, blockStates);
+        } else if (separateSizeMask == 7) {
+            visitor.visitRegion(regionName, sizeX, sizeY, sizeZ, palette, blockStates);
+        } else {
+            visitor.visitRegion(regionName, 0, 0, 0, palette, blockStates);
+        }
+    }
+
+    /**
+     * 读取调色板，只保留每一项的Name，Properties等其他标签直接跳过
+     */
+    private String[] readPalette() throws IOException {
+        byte elementType = in.readByte();
+        int length = readLength();
+        if (elementType != TAG_COMPOUND) {
+            skipListElements(elementType, length, 3);
+            return new String[0];
+        }
+        String[] palette = new String[length];
+        for (int i = 0; i < length; i++) {
+            String name = null;
+            byte type;
+            while ((type = in.readByte()) != TAG_END) {
+                String key = in.readUTF();
+                if (type == TAG_STRING && key.equals("Name")) {
+                    name = in.readUTF();
+                } else {
+                    skipPayload(type, 4);
+                }
+            }
+            palette[i] = name != null ? name : "minecraft:air";
+        }
+        return palette;
+    }
+
+    private long[] readLongArray() throws IOException {
+        int length = readLength();
+        long[] result = new long[length];
+        int done = 0;
+        while (done < length) {
+            int count = Math.min(length - done, longBuffer.length / Long.BYTES);
+            in.readFully(longBuffer, 0, count * Long.BYTES);
+            ByteBuffer.wrap(longBuffer, 0, count * Long.BYTES).asLongBuffer().get(result, done, count);
+            done += count;
+        }
+        return result;
+    }
+
+    private int[] readVec3Compound() throws IOException {
+        int[] vec = new int[3];
+        int found = 0;
+        byte type;
+        while ((type = in.readByte()) != TAG_END) {
+            String key = in.readUTF();
+            if (type == TAG_INT && key.length() == 1 && key.charAt(0) >= 'x' && key.charAt(0) <= 'z') {
+                vec[key.charAt(0) - 'x'] = in.readInt();
+                found |= 1 << (key.charAt(0) - 'x');
+            } else {
+                skipPayload(type, 3);
+            }
+        }
+        return found == 7 ? vec : null;
+    }
+
+    private int[] readIntList() throws IOException {
+        byte elementType = in.readByte();
+        int length = readLength();
+        if (elementType != TAG_INT) {
+            skipListElements(elementType, length, 3);
+            return null;
+        }
+        int[] result = new int[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = in.readInt();
+        }
+        return result;
+    }
+
+    private int readLength() throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative NBT length: " + length);
+        }
+        return length;
+    }
+
+    /**
+     * 按长度跳过一个标签的内容
+     */
+    private void skipPayload(byte type, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("NBT structure nested too deeply");
+        }
+        switch (type) {
+            case TAG_BYTE:
+                in.skipNBytes(1);
+                break;
+            case TAG_SHORT:
+                in.skipNBytes(2);
+                break;
+            case TAG_INT:
+            case TAG_FLOAT:
+                in.skipNBytes(4);
+                break;
+            case TAG_LONG:
+            case TAG_DOUBLE:
+                in.skipNBytes(8);
+                break;
+            case TAG_BYTE_ARRAY:
+                in.skipNBytes(readLength());
+                break;
+            case TAG_STRING:
+                in.skipNBytes(in.readUnsignedShort());
+                break;
+            case TAG_LIST: {
+                byte elementType = in.readByte();
+                skipListElements(elementType, readLength(), depth + 1);
+                break;
+            }
+            case TAG_COMPOUND: {
+                byte childType;
+                while ((childType = in.readByte()) != TAG_END) {
+                    in.skipNBytes(in.readUnsignedShort());
+                    skipPayload(childType, depth + 1);
+                }
+                break;
+            }
+            case TAG_INT_ARRAY:
+                in.skipNBytes(4L * readLength());
+                break;
+            case TAG_LONG_ARRAY:
+                in.skipNBytes(8L * readLength());
+                break;
+            default:
+                throw new IOException("Unknown NBT tag type: " + type);
+        }
+    }
+
+    private void skipListElements(byte elementType, int length, int depth) throws IOException {
+        switch (elementType) {
+            case TAG_END:
+                break;
+            case TAG_BYTE:
+                in.skipNBytes(length);
+                break;
+            case TAG_SHORT:
+                in.skipNBytes(2L * length);
+                break;
+            case TAG_INT:
+            case TAG_FLOAT:
+                in.skipNBytes(4L * length);
+                break;
+            case TAG_LONG:
+            case TAG_DOUBLE:
+                in.skipNBytes(8L * length);
+                break;
+            default:
+                for (int i = 0; i < length; i++) {
+                    skipPayload(elementType, depth);
+                }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package ch.endte.syncmatica.material;
+
+import fi.dy.masa.litematica.schematic.container.LitematicaBitArray;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 用Litematica自己的LitematicaBitArray校验PackedBitArrayReader的结果
+ * 首次统计前做一次自检；调试开关打开或自检失败时再逐个区域重新解码校验
+ * 单独放在一个类中，这样在没有安装Litematica的服务端上不会加载Litematica的类
+ */
+class LitematicaBitArrayCheck {
+    private static final Logger LOGGER = LogManager.getLogger();
+    // 自检覆盖的比特数：2的幂时条目不跨越long，其余的条目会跨越两个long
+    private static final int[] SELF_CHECK_BITS = {1, 2, 4, 8, 16, 32, 3, 5, 6, 7, 9, 13, 17, 31};
+    // 不是每个long条目数的整数倍，最后一个long只用了一部分
+    private static final int SELF_CHECK_SIZE = 4096 + 37;
+
+    private LitematicaBitArrayCheck() {
+    }
+
+    static boolean verify(String regionName, long[] data, int bits, long totalBlocks, int[] histogram) {
+        try {
+            long size = Math.min(totalBlocks, PackedBitArrayReader.getCapacity(data, bits));
+            LitematicaBitArray reference = new LitematicaBitArray(bits, size, data);
+            int[] expected = new int[histogram.length];
+            for (long i = 0; i < size; i++) {
+                int value = reference.getAt(i);
+                if (value != PackedBitArrayReader.get(data, bits, i)) {
+                    LOGGER.warn("Material decoding mismatch in region {} at index {} (bits={})", regionName, i, bits);
+                    return false;
+                }
+                if (value < expected.length) {
+                    expected[value]++;
+                }
+            }
+            if (!Arrays.equals(expected, histogram)) {
+                LOGGER.warn("Material histogram mismatch in region {} (bits={})", regionName, bits);
+                return false;
+            }
+            return true;
+        } catch (LinkageError e) {
+            // 没有安装Litematica，无法校验
+            return true;
+        }
+    }
+
+    /**
+     * 用LitematicaBitArray写入随机数据，再比较PackedBitArrayReader的随机读取和分段统计结果
+     * 分段的起止位置故意不落在long的边界上
+     * @return 没有安装Litematica时返回true
+     */
+    static boolean selfCheck() {
+        try {
+            Random random = new Random(SELF_CHECK_SIZE);
+            for (int bits : SELF_CHECK_BITS) {
+                boolean passed;
+                try {
+                    passed = selfCheck(bits, random);
+                } catch (RuntimeException e) {
+                    // 读取越界也算作解码错误
+                    passed = false;
+                }
+                if (!passed) {
+                    LOGGER.error("PackedBitArrayReader disagrees with LitematicaBitArray for {} bits per entry, every region will be verified", bits);
+                    return false;
+                }
+            }
+            return true;
+        } catch (LinkageError e) {
+            // 没有安装Litematica，无法校验
+            return true;
+        }
+    }
+
+    private static boolean selfCheck(int bits, Random random) {
+        // 一半的条目落在直方图内，另一半用满整个宽度，检查高位不会串到相邻条目
+        int histogramSize = bits < 6 ? 1 << bits : 64;
+        int valueShift = Integer.SIZE - Math.min(bits, Integer.SIZE - 1);
+        LitematicaBitArray reference = new LitematicaBitArray(bits, SELF_CHECK_SIZE);
+        for (int i = 0; i < SELF_CHECK_SIZE; i++) {
+            reference.setAt(i, random.nextBoolean() ? random.nextInt(histogramSize) : random.nextInt() >>> valueShift);
+        }
+        long[] data = reference.getBackingLongArray();
+        long[][] ranges = {{0, SELF_CHECK_SIZE}, {1, SELF_CHECK_SIZE - 1}, {SELF_CHECK_SIZE / 3, SELF_CHECK_SIZE / 3 * 2 + 5}};
+        for (long[] range : ranges) {
+            int[] expected = new int[histogramSize];
+            for (long i = range[0]; i < range[1]; i++) {
+                int value = reference.getAt(i);
+                if (value != PackedBitArrayReader.get(data, bits, i)) {
+                    return false;
+                }
+                if (value < histogramSize) {
+                    expected[value]++;
+                }
+            }
+            int[] histogram = new int[histogramSize];
+            PackedBitArrayReader.countEntries(data, bits, range[0], range[1], histogram);
+            if (!Arrays.equals(expected, histogram)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
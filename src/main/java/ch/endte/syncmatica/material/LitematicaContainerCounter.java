@@ -0,0 +1,95 @@
+package ch.endte.syncmatica.material;
+
+import fi.dy.masa.litematica.schematic.LitematicaSchematic;
+import fi.dy.masa.litematica.schematic.container.ILitematicaBlockStatePalette;
+import fi.dy.masa.litematica.schematic.container.LitematicaBlockStateContainer;
+import net.minecraft.block.BlockState;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.math.Vec3i;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 从已加载的LitematicaSchematic统计材料数量，用于无法直接读取文件的情况
+ * 直接遍历每个子区域容器的调色板和底层的打包数组，不再逐个方块调用get(x, y, z)
+ */
+class LitematicaContainerCounter {
+
+    private LitematicaContainerCounter() {
+    }
+
+    /**
+     * @return 方块ID -> 数量
+     */
+    static Map<String, Integer> countMaterials(LitematicaSchematic schematic) {
+        Map<String, Integer> materialCounts = new HashMap<>();
+        for (String regionName : schematic.getAreaSizes().keySet()) {
+            LitematicaBlockStateContainer container = schematic.getSubRegionContainer(regionName);
+            if (container != null) {
+                countContainer(container, materialCounts);
+            }
+        }
+        return materialCounts;
+    }
+
+    private static void countContainer(LitematicaBlockStateContainer container, Map<String, Integer> materialCounts) {
+        ILitematicaBlockStatePalette palette = container.getPalette();
+        int paletteSize = palette.getPaletteSize();
+        Vec3i size = container.getSize();
+        long totalBlocks = (long) size.getX() * size.getY() * size.getZ();
+        if (paletteSize <= 0 || totalBlocks <= 0) {
+            return;
+        }
+
+        // 容器的比特数总是由调色板大小决定：读取时按调色板大小创建，扩容时调色板和比特数一起增长
+        long[] data = container.getBackingLongArray();
+        int bits = PackedBitArrayReader.getBitsPerEntry(paletteSize);
+        if (data == null || data.length < (totalBlocks * bits + Long.SIZE - 1) / Long.SIZE) {
+            countContainerByPosition(container, size, materialCounts);
+            return;
+        }
+
+        int[] histogram = new int[paletteSize];
+        PackedBitArrayReader.countEntries(data, bits, 0, totalBlocks, histogram);
+        for (int i = 0; i < paletteSize; i++) {
+            if (histogram[i] > 0) {
+                addState(palette.getBlockState(i), histogram[i], materialCounts);
+            }
+        }
+    }
+
+    /**
+     * 打包数组与调色板对不上时的兜底方案：按坐标读取，先按方块状态计数，最后再转换为方块ID
+     */
+    private static void countContainerByPosition(LitematicaBlockStateContainer container, Vec3i size, Map<String, Integer> materialCounts) {
+        Map<BlockState, int[]> stateCounts = new IdentityHashMap<>();
+        BlockState lastState = null;
+        int[] lastCount = null;
+        for (int y = 0; y < size.getY(); y++) {
+            for (int z = 0; z < size.getZ(); z++) {
+                for (int x = 0; x < size.getX(); x++) {
+                    BlockState state = container.get(x, y, z);
+                    // 相邻方块通常相同，记住上一次的计数器可以省去大部分查表
+                    if (state != lastState) {
+                        lastState = state;
+                        lastCount = stateCounts.computeIfAbsent(state, s -> new int[1]);
+                    }
+                    lastCount[0]++;
+                }
+            }
+        }
+        for (Map.Entry<BlockState, int[]> entry : stateCounts.entrySet()) {
+            addState(entry.getKey(), entry.getValue()[0], materialCounts);
+        }
+    }
+
+    private static void addState(BlockState state, int count, Map<String, Integer> materialCounts) {
+        if (state == null || state.isAir()) {
+            return;
+        }
+        String blockId = Registries.BLOCK.getId(state.getBlock()).toString();
+        materialCounts.merge(blockId, count, Integer::sum);
+    }
+}
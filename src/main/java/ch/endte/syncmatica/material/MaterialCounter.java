@@ -0,0 +1,229 @@
+package ch.endte.syncmatica.material;
+
+import ch.endte.syncmatica.Context;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 从.litematic文件统计材料数量
+ * NBT按顺序流式读取，每读完一个区域就把它的解码和统计作为一个任务提交到ForkJoin线程池，
+ * 较大的区域再按Y层拆分成多个子任务，最后合并所有区域的直方图
+ * 线程池的并行度由material.parallelism配置，避免占满HTTP线程和游戏线程
+ */
+public class MaterialCounter {
+    // 单个任务最多处理的方块数，超过后按Y层继续拆分
+    private static final long SPLIT_THRESHOLD = 1L << 20;
+
+    private final Context context;
+    // 首次统计时运行的解码自检结果，null表示尚未运行
+    private static volatile Boolean decodingVerified = null;
+
+    public MaterialCounter(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * @return 方块ID -> 数量，解析失败或没有材料时返回null
+     */
+    public Map<String, Integer> countMaterials(File litematicFile) {
+        return countMaterials(litematicFile, null);
+    }
+
+    /**
+     * @param listener 进度回调，可以为null
+     * @return 方块ID -> 数量，解析失败或没有材料时返回null
+     */
+    public Map<String, Integer> countMaterials(File litematicFile, ProgressListener listener) {
+        if (litematicFile == null || !litematicFile.exists() || !litematicFile.isFile()) {
+            return null;
+        }
+
+        List<RegionJob> jobs = new ArrayList<>();
+        try {
+            ForkJoinPool pool = context.getMaterialService().getCountingPool();
+
+            // 流式读取NBT，只解码调色板和方块状态数组，读完一个区域就提交一个任务
+            boolean regionsFound = LitematicStreamReader.read(litematicFile, (regionName, sizeX, sizeY, sizeZ, palette, blockStateArray) -> {
+                RegionJob job = createRegionJob(regionName, sizeX, sizeY, sizeZ, palette, blockStateArray);
+                if (job != null) {
+                    job.listener = listener;
+                    if (listener != null) {
+                        listener.onRegionFound(job.totalBlocks);
+                    }
+                    job.task = pool.submit(new RegionCountTask(job, 0, job.totalBlocks));
+                    jobs.add(job);
+                }
+            });
+            if (!regionsFound) {
+                cancelAll(jobs);
+                return null;
+            }
+
+            Map<String, Integer> materialCounts = new HashMap<>();
+            for (RegionJob job : jobs) {
+                int[] histogram = job.task.join();
+                verify(job, histogram);
+                mergeHistogram(job.palette, histogram, materialCounts);
+                if (listener != null) {
+                    listener.onRegionDone();
+                }
+            }
+
+            // 如果有收集到材料，返回结果
+            if (!materialCounts.isEmpty()) {
+                return materialCounts;
+            }
+        } catch (Exception e) {
+            // 保持静默
+            cancelAll(jobs);
+        }
+
+        // 解析失败
+        return null;
+    }
+
+    private RegionJob createRegionJob(String regionName, int sizeX, int sizeY, int sizeZ, String[] palette, long[] blockStateArray) {
+        int paletteSize = palette.length;
+        if (paletteSize == 0 || blockStateArray.length == 0) {
+            return null;
+        }
+
+        RegionJob job = new RegionJob();
+        job.regionName = regionName;
+        job.palette = palette;
+        job.data = blockStateArray;
+
+        // 计算每个方块状态需要的比特数
+        job.bits = PackedBitArrayReader.getBitsPerEntry(paletteSize);
+
+        // Litematica允许负方向的区域，体积按绝对值计算
+        job.totalBlocks = (long) Math.abs(sizeX) * Math.abs(sizeY) * Math.abs(sizeZ);
+        job.layerSize = (long) Math.abs(sizeX) * Math.abs(sizeZ);
+
+        // 如果尺寸无效，按数组能容纳的条目数统计
+        if (job.totalBlocks == 0) {
+            job.totalBlocks = PackedBitArrayReader.getCapacity(blockStateArray, job.bits);
+            job.layerSize = 1;
+        }
+        return job;
+    }
+
+    private void verify(RegionJob job, int[] histogram) {
+        if (isDecodingVerified() && !context.getDebugService().isVerifyMaterialDecoding()) {
+            return;
+        }
+        LitematicaBitArrayCheck.verify(job.regionName, job.data, job.bits, job.totalBlocks, histogram);
+    }
+
+    private static boolean isDecodingVerified() {
+        if (decodingVerified == null) {
+            synchronized (MaterialCounter.class) {
+                if (decodingVerified == null) {
+                    decodingVerified = LitematicaBitArrayCheck.selfCheck();
+                }
+            }
+        }
+        return decodingVerified;
+    }
+
+    private void cancelAll(List<RegionJob> jobs) {
+        for (RegionJob job : jobs) {
+            job.task.cancel(true);
+        }
+    }
+
+    /**
+     * 将区域直方图按调色板合并到材料计数中，每个调色板项只查表一次
+     * 同一方块的不同状态（如朝向）在调色板中是不同的项，这里会合并到同一个方块ID下
+     */
+    private void mergeHistogram(String[] palette, int[] histogram, Map<String, Integer> materialCounts) {
+        for (int i = 0; i < histogram.length; i++) {
+            String blockId = palette[i];
+            if (histogram[i] == 0 || blockId == null || blockId.equals("minecraft:air")) {
+                continue;
+            }
+            materialCounts.merge(blockId, histogram[i], Integer::sum);
+        }
+    }
+
+    /**
+     * 统计进度回调，可能在ForkJoin线程中被并发调用
+     */
+    public interface ProgressListener {
+        /**
+         * 读取到一个新的区域
+         */
+        void onRegionFound(long totalBlocks);
+
+        /**
+         * 已统计完一批方块
+         */
+        void onBlocksScanned(long blocks);
+
+        /**
+         * 一个区域已统计完毕
+         */
+        void onRegionDone();
+    }
+
+    /**
+     * 单个区域的数据
+     */
+    private static class RegionJob {
+        String regionName;
+        String[] palette;
+        long[] data;
+        int bits;
+        long totalBlocks;
+        long layerSize;
+        ProgressListener listener;
+        ForkJoinTask<int[]> task;
+    }
+
+    /**
+     * 统计区域中[start, end)范围内的方块，范围过大时在Y层边界处一分为二
+     */
+    private static class RegionCountTask extends RecursiveTask<int[]> {
+        private final RegionJob job;
+        private final long start;
+        private final long end;
+
+        RegionCountTask(RegionJob job, long start, long end) {
+            this.job = job;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected int[] compute() {
+            long length = end - start;
+            if (length <= SPLIT_THRESHOLD || length < 2 * job.layerSize) {
+                // 按调色板索引累加到直方图中，循环内不做装箱和字符串哈希
+                int[] histogram = new int[job.palette.length];
+                PackedBitArrayReader.countEntries(job.data, job.bits, start, end, histogram);
+                if (job.listener != null) {
+                    job.listener.onBlocksScanned(length);
+                }
+                return histogram;
+            }
+
+            long middle = start + (length / 2) / job.layerSize * job.layerSize;
+            RegionCountTask lower = new RegionCountTask(job, start, middle);
+            RegionCountTask upper = new RegionCountTask(job, middle, end);
+            lower.fork();
+            int[] histogram = upper.compute();
+            int[] lowerHistogram = lower.join();
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] += lowerHistogram[i];
+            }
+            return histogram;
+        }
+    }
+}
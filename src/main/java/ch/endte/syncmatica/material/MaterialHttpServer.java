@@ -4,8 +4,10 @@ import ch.endte.syncmatica.Context;
 import ch.endte.syncmatica.ServerPlacement;
 import ch.endte.syncmatica.litematica.IIDContainer;
 import ch.endte.syncmatica.litematica.LitematicManager;
+import ch.endte.syncmatica.material.handlers.JobsHandler;
 import ch.endte.syncmatica.material.handlers.MaterialsHandler;
 import ch.endte.syncmatica.material.handlers.MaterialStatusHandler;
+import ch.endte.syncmatica.material.handlers.PlacementQueryHandler;
 import ch.endte.syncmatica.material.handlers.PlacementsHandler;
 import ch.endte.syncmatica.material.handlers.TextHandler;
 import com.google.gson.Gson;
@@ -21,32 +23,26 @@ import fi.dy.masa.litematica.schematic.LitematicaSchematic;
 import fi.dy.masa.litematica.schematic.placement.SchematicPlacement;
 import fi.dy.masa.litematica.schematic.placement.SchematicPlacementManager;
 import net.minecraft.block.Block;
-import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.item.Item;
 import net.minecraft.item.Items;
 import net.minecraft.registry.Registries;
 import net.minecraft.util.Identifier;
-import net.minecraft.util.math.BlockPos;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.DataInputStream;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.BufferedReader;
-import java.lang.reflect.Method;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.zip.GZIPInputStream;
+import java.util.function.Consumer;
 
 import net.minecraft.nbt.*;
 
@@ -63,9 +59,20 @@ public class MaterialHttpServer {
     // 常见方块和物品的翻译映射表
     private static final Map<String, String> COMMON_TRANSLATIONS = new HashMap<>();
     
-    // 存储材料收集状态的数据结构
-    // 外层Map: placementId -> 内层Map(itemId -> 已收集数量)
-    private final Map<String, Map<String, Integer>> materialCollectionStatus = new ConcurrentHashMap<>();
+    // 材料数据的磁盘索引：按文件哈希保存材料统计，按投影ID保存收集状态
+    private final MaterialIndex materialIndex;
+    
+    // 材料清单缓存，以文件哈希为键，避免重复解析同一个.litematic文件
+    private final MaterialListCache materialListCache = new MaterialListCache();
+    
+    // 材料统计，按区域并行解码
+    private final MaterialCounter materialCounter;
+    
+    // 异步材料统计任务
+    private final MaterialJobManager jobManager;
+    
+    // 投影被删除时清理其收集进度
+    private final Consumer<ServerPlacement> placementListener = this::onPlacementUpdated;
     
     // 获取本地化名称的方法
     public String getTranslatedName(String key) {
@@ -328,9 +335,21 @@ public class MaterialHttpServer {
 
     public MaterialHttpServer(Context context) {
         this.context = context;
+        this.materialCounter = new MaterialCounter(context);
+        this.jobManager = new MaterialJobManager(this);
+        this.materialIndex = new MaterialIndex(new File(context.getConfigFolder(), "materials"));
     }
 
     public void start() {
+        context.getSyncmaticManager().addServerPlacementConsumer(placementListener);
+        // 服务器启动时投影已全部加载，清理服务器未运行期间被删除的投影的进度
+        if (context.isServer()) {
+            Set<String> placementIds = new HashSet<>();
+            for (ServerPlacement placement : context.getSyncmaticManager().getAll()) {
+                placementIds.add(placement.getId().toString());
+            }
+            materialIndex.retainCollectionStatus(placementIds);
+        }
         try {
             // 确保翻译已加载
             if (translationMap == null) {
@@ -341,9 +360,11 @@ public class MaterialHttpServer {
             
             // 注册处理器
             server.createContext("/api/placements", new PlacementsHandler(this, context, gson));
+            server.createContext("/api/placements/query", new PlacementQueryHandler(this, context, gson));
             server.createContext("/api/materials", new MaterialsHandler(this, context, gson));
             server.createContext("/api/txt", new TextHandler(this, context, gson));
             server.createContext("/api/materials/status", new MaterialStatusHandler(this, context, gson));
+            server.createContext("/api/jobs", new JobsHandler(this, gson));
             
             server.setExecutor(Executors.newFixedThreadPool(4));
             server.start();
@@ -358,6 +379,9 @@ public class MaterialHttpServer {
     }
 
     public void stop() {
+        context.getSyncmaticManager().removeServerPlacementConsumer(placementListener);
+        jobManager.shutdown();
+        materialIndex.close();
         if (server != null) {
             server.stop(0);
             // 只保留一条简单的服务器停止日志
@@ -394,24 +418,48 @@ public class MaterialHttpServer {
     
     /**
      * 从ServerPlacement获取真实的材料列表
+     * @throws IOException 无法统计材料时抛出，不会返回示例数据
+     */
+    public JsonObject getMaterialListFromPlacement(ServerPlacement placement) throws IOException {
+        return getMaterialListFromPlacement(placement, null);
+    }
+    
+    /**
+     * 从ServerPlacement获取真实的材料列表，解析文件时通过listener报告进度
      */
-    public JsonObject getMaterialListFromPlacement(ServerPlacement placement) {
-        // 首先尝试直接解析.litematic文件
+    public JsonObject getMaterialListFromPlacement(ServerPlacement placement, MaterialCounter.ProgressListener listener) throws IOException {
+        // 文件哈希相同则内容相同，命中缓存时直接返回
+        Map<String, Integer> cachedCounts = materialListCache.get(placement.getHash());
+        if (cachedCounts != null) {
+            return createMaterialList(cachedCounts);
+        }
+        
+        // 其次读取保存在磁盘上的统计结果
+        Map<String, Integer> persistedCounts = loadPersistedCounts(placement.getHash());
+        if (persistedCounts != null) {
+            materialListCache.put(placement.getHash(), persistedCounts);
+            return createMaterialList(persistedCounts);
+        }
+        
+        // 然后尝试直接解析.litematic文件
         try {
             File litematicFile = context.getFileStorage().getLocalLitematic(placement);
             if (litematicFile != null && litematicFile.exists()) {
-                JsonObject result = parseSchematicFile(litematicFile, placement.getName());
-                if (result != null) {
-                    return result;
+                Map<String, Integer> counts = materialCounter.countMaterials(litematicFile, listener);
+                if (counts == null) {
+                    throw new IOException("Failed to parse " + litematicFile.getName());
                 }
+                materialListCache.put(placement.getHash(), counts);
+                persistCounts(placement.getHash(), counts);
+                return createMaterialList(counts);
             }
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
             // 保持静默
         }
         
         // 如果直接解析失败，尝试使用API
-        JsonObject materials = new JsonObject();
-        JsonArray materialList = new JsonArray();
         Map<String, Integer> materialCounts = new HashMap<>();
         
         try {
@@ -460,7 +508,7 @@ public class MaterialHttpServer {
                 
                 // 尝试直接解析文件
                 if (schematicFile != null && schematicFile.exists()) {
-                    JsonObject result = parseSchematicFile(schematicFile, placement.getName());
+                    Map<String, Integer> counts = materialCounter.countMaterials(schematicFile, listener);
                     
                     // 如果临时渲染了投影，需要取消渲染
                     if (needUnrender) {
@@ -471,32 +519,20 @@ public class MaterialHttpServer {
                         }
                     }
                     
-                    if (result != null) {
-                        return result;
+                    if (counts == null) {
+                        throw new IOException("Failed to parse " + schematicFile.getName());
                     }
+                    materialListCache.put(placement.getHash(), counts);
+                    return createMaterialList(counts);
                 }
                 
                 // 如果直接解析失败，尝试使用API
                 LitematicaSchematic schematic = schematicPlacement.getSchematic();
                 
                 if (schematic != null) {
-                    // 尝试使用反射获取区域和方块数据
+                    // 直接遍历各子区域容器的调色板和打包数组
                     try {
-                        Class<?> schematicClass = schematic.getClass();
-                        
-                        // 尝试读取子区域的名称
-                        Method getRegionNames = findMethod(schematicClass, "getRegionNames");
-                        if (getRegionNames != null) {
-                            Set<String> regionNames = (Set<String>) getRegionNames.invoke(schematic);
-                            
-                            // 尝试获取每个区域的材料
-                            for (String regionName : regionNames) {
-                                collectMaterialsForRegion(schematic, regionName, materialCounts);
-                            }
-                        } else {
-                            // 假设可能有一个主区域，使用投影名称
-                            collectMaterialsForRegion(schematic, placement.getName(), materialCounts);
-                        }
+                        materialCounts = LitematicaContainerCounter.countMaterials(schematic);
                     } catch (Exception e) {
                         // 保持静默
                     }
@@ -524,47 +560,96 @@ public class MaterialHttpServer {
                 try {
                     File file = context.getFileStorage().getLocalLitematic(placement);
                     if (file != null && file.exists()) {
-                        JsonObject result = parseSchematicFile(file, placement.getName());
-                        if (result != null) {
-                            return result;
+                        Map<String, Integer> counts = materialCounter.countMaterials(file, listener);
+                        if (counts == null) {
+                            throw new IOException("Failed to parse " + file.getName());
                         }
+                        materialListCache.put(placement.getHash(), counts);
+                        persistCounts(placement.getHash(), counts);
+                        return createMaterialList(counts);
                     }
+                } catch (IOException e) {
+                    throw e;
                 } catch (Exception e) {
                     // 保持静默
                 }
             }
+        } catch (IOException e) {
+            throw e;
         } catch (Exception e) {
-            return createDynamicMaterialList(placement.getName());
+            throw new IOException("Failed to count materials of " + placement.getName(), e);
         }
         
         // 如果我们收集到了材料
         if (!materialCounts.isEmpty()) {
-            // 添加材料到JSON响应
-            for (Map.Entry<String, Integer> entry : materialCounts.entrySet()) {
-                JsonObject material = new JsonObject();
-                material.addProperty("itemId", entry.getKey());
-                
-                try {
-                    // 尝试获取方块名称
-                    Block block = Registries.BLOCK.get(new Identifier(entry.getKey()));
-                    String blockName = getTranslatedName(entry.getKey());
-                    material.addProperty("name", blockName);
-                } catch (Exception e) {
-                    // 如果无法获取名称，就使用ID
-                    material.addProperty("name", getTranslatedName(entry.getKey()));
-                }
-                
-                material.addProperty("count", entry.getValue());
-                materialList.add(material);
-            }
+            materialListCache.put(placement.getHash(), materialCounts);
+            return createMaterialList(materialCounts);
+        }
+        throw new IOException("No litematic available for " + placement.getName());
+    }
+    
+    /**
+     * 投影文件保存完成后在后台预先统计材料，并写入.materials文件
+     * 之后的HTTP请求只需读取统计结果，不必再解析.litematic文件
+     */
+    public void precomputeMaterials(ServerPlacement placement) {
+        if (materialListCache.contains(placement.getHash())
+                || MaterialSidecar.exists(context.getLitematicFolder(), placement.getHash())) {
+            return;
+        }
+        jobManager.submit(placement);
+    }
+    
+    /**
+     * 读取保存在磁盘上的材料统计
+     * 服务端的文件按哈希命名，统计结果保存在文件旁边的.materials文件中；
+     * 客户端的文件按名称命名，统计结果保存在配置目录的索引中
+     */
+    private Map<String, Integer> loadPersistedCounts(UUID hash) {
+        if (context.isServer()) {
+            return MaterialSidecar.read(context.getLitematicFolder(), hash);
+        }
+        return materialIndex.getHistogram(hash);
+    }
+    
+    private void persistCounts(UUID hash, Map<String, Integer> counts) {
+        if (context.isServer()) {
+            MaterialSidecar.write(context.getLitematicFolder(), hash, counts);
         } else {
-            return createDynamicMaterialList(placement.getName());
+            materialIndex.putHistogram(hash, counts);
+        }
+    }
+    
+    /**
+     * 根据材料计数（物品ID -> 数量）构建材料清单JSON
+     * 每次调用都返回新的对象，处理器可以放心地在其上添加收集状态
+     */
+    public JsonObject createMaterialList(Map<String, Integer> materialCounts) {
+        JsonObject materials = new JsonObject();
+        JsonArray materialList = new JsonArray();
+        
+        for (Map.Entry<String, Integer> entry : materialCounts.entrySet()) {
+            addMaterial(materialList, entry.getKey(), getTranslatedName(entry.getKey()), entry.getValue());
         }
         
         materials.add("items", materialList);
         return materials;
     }
     
+    /**
+     * 获取异步材料统计任务管理器
+     */
+    public MaterialJobManager getJobManager() {
+        return jobManager;
+    }
+    
+    /**
+     * 获取材料清单缓存
+     */
+    public MaterialListCache getMaterialListCache() {
+        return materialListCache;
+    }
+    
     /**
      * 获取翻译后的文本，如果没有找到翻译则返回默认值
      */
@@ -586,11 +671,49 @@ public class MaterialHttpServer {
         }
     }
     
+    /**
+     * 将收集状态添加到材料列表的每一项中
+     */
+    public void addCollectionStatus(JsonObject materialData, String placementId) {
+        if (!materialData.has("items")) {
+            return;
+        }
+        JsonArray items = materialData.getAsJsonArray("items");
+        Map<String, Integer> collectionStatus = getMaterialCollectionStatus(placementId);
+        
+        for (int i = 0; i < items.size(); i++) {
+            JsonObject item = items.get(i).getAsJsonObject();
+            if (item.has("itemId") && item.has("count")) {
+                String itemId = item.get("itemId").getAsString();
+                int totalCount = item.get("count").getAsInt();
+                int collectedCount = collectionStatus.getOrDefault(itemId, 0);
+                
+                // 确保收集数量不超过总数
+                if (collectedCount > totalCount) {
+                    collectedCount = totalCount;
+                }
+                
+                item.addProperty("collectedCount", collectedCount);
+                item.addProperty("remaining", totalCount - collectedCount);
+                item.addProperty("percentComplete", totalCount > 0 ? (collectedCount * 100 / totalCount) : 0);
+                
+                // 保留向后兼容
+                item.addProperty("collected", collectedCount >= totalCount);
+            }
+        }
+    }
+    
+    private void onPlacementUpdated(ServerPlacement placement) {
+        if (context.getSyncmaticManager().getPlacement(placement.getId()) == null) {
+            materialIndex.removeCollectionStatus(placement.getId().toString());
+        }
+    }
+    
     /**
      * 获取材料收集状态
      */
     public Map<String, Integer> getMaterialCollectionStatus(String placementId) {
-        return materialCollectionStatus.getOrDefault(placementId, new HashMap<>());
+        return materialIndex.getCollectionStatus(placementId);
     }
     
     /**
@@ -606,39 +729,12 @@ public class MaterialHttpServer {
         int validCount = Math.min(collectedCount, totalCount);
         if (validCount < 0) validCount = 0;
         
-        Map<String, Integer> itemStatus = materialCollectionStatus.computeIfAbsent(placementId, k -> new ConcurrentHashMap<>());
-        itemStatus.put(itemId, validCount);
+        materialIndex.setCollectionStatus(placementId, itemId, validCount);
         
         // 返回是否数量被限制
         return collectedCount > totalCount;
     }
     
-    /**
-     * 创建动态材料列表
-     */
-    public JsonObject createDynamicMaterialList(String placementName) {
-        JsonObject materials = new JsonObject();
-        JsonArray materialList = new JsonArray();
-
-        // 创建动态数量的石头方块
-        Random random = new Random(placementName.hashCode());
-        int stoneCount = 50 + random.nextInt(100);
-        addMaterial(materialList, "minecraft:stone", getTranslatedName("minecraft:stone"), stoneCount);
-        
-        // 创建动态数量的木头方块
-        int woodCount = 20 + random.nextInt(50);
-        addMaterial(materialList, "minecraft:oak_log", getTranslatedName("minecraft:oak_log"), woodCount);
-        
-        // 添加一些红石和其他常用方块
-        addMaterial(materialList, "minecraft:redstone", getTranslatedName("minecraft:redstone"), 10 + random.nextInt(40));
-        addMaterial(materialList, "minecraft:glass", getTranslatedName("minecraft:glass"), 5 + random.nextInt(30));
-        addMaterial(materialList, "minecraft:iron_ingot", getTranslatedName("minecraft:iron_ingot"), 2 + random.nextInt(15));
-        addMaterial(materialList, "minecraft:white_wool", getTranslatedName("minecraft:white_wool"), 5 + random.nextInt(20));
-        
-        materials.add("items", materialList);
-        return materials;
-    }
-    
     /**
      * 创建示例材料列表
      */
@@ -699,233 +795,6 @@ public class MaterialHttpServer {
         // 不执行任何操作，移除日志记录功能
     }
     
-    /**
-     * 直接从.litematic文件解析材料清单，不依赖API
-     */
-    private JsonObject parseSchematicFile(File litematicFile, String placementName) {
-        if (litematicFile == null || !litematicFile.exists() || !litematicFile.isFile()) {
-            return createDynamicMaterialList(placementName);
-        }
-
-        String fileBaseName = litematicFile.getName().replaceAll("\\.litematic$", "");
-        Map<String, Integer> materialCounts = new HashMap<>();
-        
-        try {
-            // 使用GZIPInputStream解压.litematic文件
-            try (FileInputStream fis = new FileInputStream(litematicFile);
-                 GZIPInputStream gzis = new GZIPInputStream(fis);
-                 DataInputStream dis = new DataInputStream(gzis)) {
-                
-                // 读取NBT数据
-                NbtCompound rootNbt = NbtIo.read(dis);
-                if (rootNbt == null) {
-                    return createDynamicMaterialList(placementName);
-                }
-                
-                // 获取区域数据
-                if (!rootNbt.contains("Regions", NbtElement.COMPOUND_TYPE)) {
-                    return createDynamicMaterialList(placementName);
-                }
-                
-                NbtCompound regionsNbt = rootNbt.getCompound("Regions");
-                if (regionsNbt.getSize() == 0) {
-                    return createDynamicMaterialList(placementName);
-                }
-                
-                // 遍历所有区域
-                for (String regionKey : regionsNbt.getKeys()) {
-                    NbtCompound regionNbt = regionsNbt.getCompound(regionKey);
-                    
-                    // 获取方块集合数据
-                    if (!regionNbt.contains("BlockStates", NbtElement.LONG_ARRAY_TYPE)) {
-                        continue;
-                    }
-
-                    // 获取区域尺寸
-                    int sizeX = 0, sizeY = 0, sizeZ = 0;
-                    boolean sizeFound = false;
-                    
-                    // 尝试不同的尺寸格式
-                    if (regionNbt.contains("Size", NbtElement.LIST_TYPE)) {
-                        // Size是一个列表格式 [x,y,z]
-                        NbtList sizeList = regionNbt.getList("Size", NbtElement.INT_TYPE);
-                        
-                        if (sizeList.size() >= 3) {
-                            sizeX = sizeList.getInt(0);
-                            sizeY = sizeList.getInt(1);
-                            sizeZ = sizeList.getInt(2);
-                            sizeFound = true;
-                        }
-                    }
-                    
-                    if (!sizeFound && regionNbt.contains("SizeX") && regionNbt.contains("SizeY") && regionNbt.contains("SizeZ")) {
-                        // 尝试单独的SizeX, SizeY, SizeZ字段
-                        sizeX = regionNbt.getInt("SizeX");
-                        sizeY = regionNbt.getInt("SizeY"); 
-                        sizeZ = regionNbt.getInt("SizeZ");
-                        sizeFound = true;
-                    }
-                    
-                    if (!sizeFound && regionNbt.contains("Position", NbtElement.LIST_TYPE) && 
-                               regionNbt.contains("End", NbtElement.LIST_TYPE)) {
-                        // 尝试从Position和End计算尺寸
-                        NbtList positionList = regionNbt.getList("Position", NbtElement.INT_TYPE);
-                        NbtList endList = regionNbt.getList("End", NbtElement.INT_TYPE);
-                        
-                        if (positionList.size() >= 3 && endList.size() >= 3) {
-                            int posX = positionList.getInt(0);
-                            int posY = positionList.getInt(1);
-                            int posZ = positionList.getInt(2);
-                            
-                            int endX = endList.getInt(0);
-                            int endY = endList.getInt(1);
-                            int endZ = endList.getInt(2);
-                            
-                            sizeX = Math.abs(endX - posX) + 1;
-                            sizeY = Math.abs(endY - posY) + 1;
-                            sizeZ = Math.abs(endZ - posZ) + 1;
-                            sizeFound = true;
-                        }
-                    }
-                    
-                    // 新增：尝试从区域总方块数和方块状态数组推断尺寸
-                    if (!sizeFound && regionNbt.contains("BlockStates", NbtElement.LONG_ARRAY_TYPE) && 
-                        regionNbt.contains("BlockStatePalette", NbtElement.LIST_TYPE)) {
-                        
-                        long[] blockStateArray = regionNbt.getLongArray("BlockStates");
-                        NbtList blockStatePalette = regionNbt.getList("BlockStatePalette", NbtElement.COMPOUND_TYPE);
-                        int paletteSize = blockStatePalette.size();
-                        
-                        if (paletteSize > 0 && blockStateArray.length > 0) {
-                            // 计算每个方块状态需要的比特数
-                            int bitsPerBlock = 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
-                            bitsPerBlock = Math.max(2, bitsPerBlock); // 最小为2位
-                            
-                            // 每个long可存储的方块数
-                            int blocksPerLong = 64 / bitsPerBlock;
-                            
-                            // 估算总方块数
-                            int estimatedTotalBlocks = blockStateArray.length * blocksPerLong;
-                            
-                            // 尝试推断尺寸 (假设是立方体，或者接近立方体)
-                            int dimension = (int)Math.cbrt(estimatedTotalBlocks);
-                            sizeX = dimension;
-                            sizeY = dimension;
-                            sizeZ = dimension;
-                            sizeFound = true;
-                        }
-                    }
-                    
-                    // 如果尺寸无效，设置默认尺寸以避免跳过
-                    if (!sizeFound || sizeX <= 0 || sizeY <= 0 || sizeZ <= 0) {
-                        // 设置一个默认尺寸，使解析可以继续
-                        sizeX = 16;
-                        sizeY = 16;
-                        sizeZ = 16;
-                    }
-                    
-                    // 获取调色板
-                    if (!regionNbt.contains("BlockStatePalette", NbtElement.LIST_TYPE)) {
-                        continue;
-                    }
-                    
-                    NbtList blockStatePalette = regionNbt.getList("BlockStatePalette", NbtElement.COMPOUND_TYPE);
-                    int paletteSize = blockStatePalette.size();
-                    
-                    if (paletteSize == 0) {
-                        continue;
-                    }
-                    
-                    // 调色板映射表
-                    Map<Integer, String> paletteMap = new HashMap<>();
-                    for (int i = 0; i < paletteSize; i++) {
-                        NbtCompound blockState = blockStatePalette.getCompound(i);
-                        String blockName = blockState.getString("Name");
-                        paletteMap.put(i, blockName);
-                    }
-                    
-                    // 解析方块状态数组
-                    long[] blockStateArray = regionNbt.getLongArray("BlockStates");
-                    if (blockStateArray.length > 0) {
-                        int totalBlocks = sizeX * sizeY * sizeZ;
-                        
-                        // 计算每个方块状态需要的比特数
-                        int bitsPerBlock = 32 - Integer.numberOfLeadingZeros(paletteSize - 1);
-                        bitsPerBlock = Math.max(2, bitsPerBlock); // 最小为2位
-                        
-                        // 每个long可存储的方块数
-                        int blocksPerLong = 64 / bitsPerBlock;
-                        
-                        long mask = (1L << bitsPerBlock) - 1L;
-                        int blockIndex = 0;
-                        
-                        for (int y = 0; y < sizeY && blockIndex < totalBlocks; y++) {
-                            for (int z = 0; z < sizeZ && blockIndex < totalBlocks; z++) {
-                                for (int x = 0; x < sizeX && blockIndex < totalBlocks; x++) {
-                                    // 计算此方块在数组中的位置
-                                    int longIndex = blockIndex / blocksPerLong;
-                                    if (longIndex >= blockStateArray.length) {
-                                        blockIndex++;
-                                        continue;
-                                    }
-                                    
-                                    int bitOffset = (blockIndex % blocksPerLong) * bitsPerBlock;
-                                    long value = blockStateArray[longIndex];
-                                    
-                                    // 提取当前方块的调色板索引
-                                    int paletteIndex = (int)((value >> bitOffset) & mask);
-                                    
-                                    // 处理可能的索引越界
-                                    if (paletteIndex < 0 || paletteIndex >= paletteSize) {
-                                        blockIndex++;
-                                        continue;
-                                    }
-                                    
-                                    String blockId = paletteMap.get(paletteIndex);
-                                    if (blockId != null && !blockId.equals("minecraft:air")) {
-                                        materialCounts.put(blockId, materialCounts.getOrDefault(blockId, 0) + 1);
-                                    }
-                                    blockIndex++;
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            
-            // 如果有收集到材料，返回结果
-            if (!materialCounts.isEmpty()) {
-                JsonObject materials = new JsonObject();
-                JsonArray materialList = new JsonArray();
-                
-                for (Map.Entry<String, Integer> entry : materialCounts.entrySet()) {
-                    JsonObject material = new JsonObject();
-                    material.addProperty("itemId", entry.getKey());
-                    
-                    try {
-                        // 尝试获取方块名称
-                        Block block = Registries.BLOCK.get(new Identifier(entry.getKey()));
-                        String blockName = getTranslatedName(entry.getKey());
-                        material.addProperty("name", blockName);
-                    } catch (Exception e) {
-                        material.addProperty("name", getTranslatedName(entry.getKey()));
-                    }
-                    
-                    material.addProperty("count", entry.getValue());
-                    materialList.add(material);
-                }
-                
-                materials.add("items", materialList);
-                return materials;
-            }
-        } catch (Exception e) {
-            // 保持静默
-        }
-        
-        // 如果解析失败，返回动态示例数据
-        return createDynamicMaterialList(placementName);
-    }
-    
     /**
      * 将NBT转换为JSON字符串
      */
@@ -1005,130 +874,4 @@ public class MaterialHttpServer {
     private String sanitizeFileName(String fileName) {
         return fileName.replaceAll("[\\\\/:*?\"<>|]", "_");
     }
-    
-    /**
-     * 尝试查找具有指定名称的方法
-     */
-    private Method findMethod(Class<?> clazz, String methodName) {
-        for (Method method : clazz.getMethods()) {
-            if (method.getName().equals(methodName)) {
-                method.setAccessible(true);
-                return method;
-            }
-        }
-        return null;
-    }
-    
-    /**
-     * 为区域收集材料
-     */
-    private void collectMaterialsForRegion(LitematicaSchematic schematic, String regionName, Map<String, Integer> materialCounts) {
-        try {
-            // 尝试获取区域的方块容器
-            Class<?> schematicClass = schematic.getClass();
-            
-            // 从结构获取方块数据的各种可能方法
-            Method[] possibleMethods = new Method[] {
-                findMethod(schematicClass, "getRegionBlockStateContainer"),
-                findMethod(schematicClass, "getBlockStateContainer")
-            };
-            
-            Object container = null;
-            for (Method method : possibleMethods) {
-                if (method != null) {
-                    try {
-                        container = method.invoke(schematic, regionName);
-                        if (container != null) break;
-                    } catch (Exception e) {
-                        // 尝试下一个方法
-                    }
-                }
-            }
-            
-            if (container != null) {
-                countBlocksInContainer(container, materialCounts);
-            }
-        } catch (Exception e) {
-            // 保持静默
-        }
-    }
-    
-    /**
-     * 计算容器中的方块
-     */
-    private void countBlocksInContainer(Object container, Map<String, Integer> materialCounts) {
-        try {
-            // 尝试获取容器尺寸
-            Method getSizeMethod = findMethod(container.getClass(), "getSize");
-            if (getSizeMethod == null) {
-                return;
-            }
-            
-            Object size = getSizeMethod.invoke(container);
-            if (size == null) {
-                return;
-            }
-            
-            // 确定尺寸
-            int sizeX = 0, sizeY = 0, sizeZ = 0;
-            
-            if (size instanceof BlockPos) {
-                BlockPos pos = (BlockPos) size;
-                sizeX = pos.getX();
-                sizeY = pos.getY();
-                sizeZ = pos.getZ();
-            } else {
-                // 尝试使用反射获取尺寸
-                try {
-                    Method getXMethod = findMethod(size.getClass(), "getX");
-                    Method getYMethod = findMethod(size.getClass(), "getY");
-                    Method getZMethod = findMethod(size.getClass(), "getZ");
-                    
-                    if (getXMethod != null && getYMethod != null && getZMethod != null) {
-                        sizeX = (int) getXMethod.invoke(size);
-                        sizeY = (int) getYMethod.invoke(size);
-                        sizeZ = (int) getZMethod.invoke(size);
-                    }
-                } catch (Exception e) {
-                    return;
-                }
-            }
-            
-            // 尝试获取getBlockState或get方法
-            Method getBlockMethod = findMethod(container.getClass(), "getBlockState");
-            if (getBlockMethod == null) {
-                getBlockMethod = findMethod(container.getClass(), "get");
-            }
-            
-            if (getBlockMethod == null) {
-                return;
-            }
-            
-            // 遍历所有坐标
-            for (int y = 0; y < sizeY; y++) {
-                for (int z = 0; z < sizeZ; z++) {
-                    for (int x = 0; x < sizeX; x++) {
-                        try {
-                            Object blockState = getBlockMethod.invoke(container, x, y, z);
-                            
-                            if (blockState instanceof BlockState) {
-                                BlockState state = (BlockState) blockState;
-                                if (!state.isAir()) {
-                                    Block block = state.getBlock();
-                                    String blockId = Registries.BLOCK.getId(block).toString();
-                                    
-                                    // 更新计数
-                                    materialCounts.put(blockId, materialCounts.getOrDefault(blockId, 0) + 1);
-                                }
-                            }
-                        } catch (Exception e) {
-                            // 处理单个方块时出现错误，继续下一个
-                        }
-                    }
-                }
-            }
-        } catch (Exception e) {
-            // 保持静默
-        }
-    }
 } 
\ No newline at end of file
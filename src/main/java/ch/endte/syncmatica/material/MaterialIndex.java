@@ -0,0 +1,318 @@
+package ch.endte.syncmatica.material;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 材料数据的磁盘索引，保存在配置目录下，重启后依然有效
+ * histograms.idx：以文件哈希为键的材料统计，只追加写入；首次访问时只扫描记录头建立偏移表，
+ * 需要时再按偏移读取单条记录
+ * progress.log：以投影ID为键的收集进度，每次更新追加一条记录，加载时按顺序重放；
+ * 投影被删除时追加一条删除记录；过期记录过多时重写为只包含最新状态的文件
+ */
+public class MaterialIndex {
+    private static final int HISTOGRAM_MAGIC = 0x53594D48;
+    private static final int PROGRESS_MAGIC = 0x53594D50;
+    private static final byte VERSION = 1;
+    private static final int HEADER_SIZE = 5;
+    // 记录数超过该值且大部分记录已过期时压缩进度文件
+    private static final int COMPACT_MIN_RECORDS = 1024;
+    // 数量为该值的记录表示删除整个投影的进度
+    private static final int REMOVED = -1;
+
+    private final File folder;
+    private final File histogramFile;
+    private final File progressFile;
+
+    private RandomAccessFile histogramStore = null;
+    private Map<UUID, Long> histogramOffsets = null;
+
+    private DataOutputStream progressOut = null;
+    private Map<String, Map<String, Integer>> progress = null;
+    private int progressRecords = 0;
+    // 当前状态中的条目数，随更新维护，避免每次更新都遍历所有进度
+    private int liveRecords = 0;
+    // 进度文件读取出错时不再重写，避免用不完整的状态覆盖原文件
+    private boolean progressDamaged = false;
+
+    public MaterialIndex(File folder) {
+        this.folder = folder;
+        this.histogramFile = new File(folder, "histograms.idx");
+        this.progressFile = new File(folder, "progress.log");
+    }
+
+    /**
+     * @return 方块ID -> 数量，没有记录时返回null
+     */
+    public synchronized Map<String, Integer> getHistogram(UUID hash) {
+        try {
+            openHistograms();
+            Long offset = histogramOffsets.get(hash);
+            if (offset == null) {
+                return null;
+            }
+            histogramStore.seek(offset);
+            byte[] payload = new byte[histogramStore.readInt()];
+            histogramStore.readFully(payload);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+            int entryCount = in.readInt();
+            Map<String, Integer> materialCounts = new HashMap<>();
+            for (int i = 0; i < entryCount; i++) {
+                String blockId = in.readUTF();
+                materialCounts.put(blockId, in.readInt());
+            }
+            return materialCounts;
+        } catch (IOException e) {
+            // 保持静默
+            return null;
+        }
+    }
+
+    public synchronized void putHistogram(UUID hash, Map<String, Integer> materialCounts) {
+        try {
+            openHistograms();
+            if (histogramOffsets.containsKey(hash)) {
+                return;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream payload = new DataOutputStream(bytes);
+            payload.writeInt(materialCounts.size());
+            for (Map.Entry<String, Integer> entry : materialCounts.entrySet()) {
+                payload.writeUTF(entry.getKey());
+                payload.writeInt(entry.getValue());
+            }
+
+            long recordStart = histogramStore.length();
+            histogramStore.seek(recordStart);
+            histogramStore.writeLong(hash.getMostSignificantBits());
+            histogramStore.writeLong(hash.getLeastSignificantBits());
+            histogramStore.writeInt(bytes.size());
+            histogramStore.write(bytes.toByteArray());
+            histogramOffsets.put(hash, recordStart + 16);
+        } catch (IOException e) {
+            // 保持静默
+        }
+    }
+
+    /**
+     * @return 物品ID -> 已收集数量的副本
+     */
+    public synchronized Map<String, Integer> getCollectionStatus(String placementId) {
+        loadProgress();
+        Map<String, Integer> status = progress.get(placementId);
+        return status == null ? new HashMap<>() : new HashMap<>(status);
+    }
+
+    public synchronized void setCollectionStatus(String placementId, String itemId, int count) {
+        loadProgress();
+        Integer previous = progress.computeIfAbsent(placementId, k -> new HashMap<>()).put(itemId, count);
+        if (previous != null && previous == count) {
+            return;
+        }
+        if (previous == null) {
+            liveRecords++;
+        }
+        appendProgressRecord(placementId, itemId, count);
+    }
+
+    /**
+     * 删除投影的收集进度
+     */
+    public synchronized void removeCollectionStatus(String placementId) {
+        loadProgress();
+        Map<String, Integer> status = progress.remove(placementId);
+        if (status == null) {
+            return;
+        }
+        liveRecords -= status.size();
+        appendProgressRecord(placementId, "", REMOVED);
+    }
+
+    /**
+     * 删除不在给定集合中的投影的收集进度，用于清理服务器未运行时被删除的投影
+     */
+    public synchronized void retainCollectionStatus(Set<String> placementIds) {
+        loadProgress();
+        for (String placementId : new ArrayList<>(progress.keySet())) {
+            if (!placementIds.contains(placementId)) {
+                removeCollectionStatus(placementId);
+            }
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            if (histogramStore != null) {
+                histogramStore.close();
+            }
+            if (progressOut != null) {
+                progressOut.close();
+            }
+        } catch (IOException e) {
+            // 保持静默
+        }
+        histogramStore = null;
+        histogramOffsets = null;
+        progressOut = null;
+        progress = null;
+        progressDamaged = false;
+    }
+
+    /**
+     * 打开索引文件，只读取记录头建立偏移表
+     * 文件末尾写了一半的记录会被截掉
+     */
+    private void openHistograms() throws IOException {
+        if (histogramStore != null) {
+            return;
+        }
+        folder.mkdirs();
+        RandomAccessFile store = new RandomAccessFile(histogramFile, "rw");
+        Map<UUID, Long> offsets = new HashMap<>();
+        if (store.length() < HEADER_SIZE || store.readInt() != HISTOGRAM_MAGIC || store.readByte() != VERSION) {
+            store.setLength(0);
+            store.seek(0);
+            store.writeInt(HISTOGRAM_MAGIC);
+            store.writeByte(VERSION);
+        } else {
+            long position = HEADER_SIZE;
+            long length = store.length();
+            while (position + 20 <= length) {
+                store.seek(position);
+                UUID hash = new UUID(store.readLong(), store.readLong());
+                int payloadLength = store.readInt();
+                long next = position + 20 + payloadLength;
+                if (payloadLength < 0 || next > length) {
+                    break;
+                }
+                offsets.put(hash, position + 16);
+                position = next;
+            }
+            if (position != length) {
+                store.setLength(position);
+            }
+        }
+        histogramStore = store;
+        histogramOffsets = offsets;
+    }
+
+    /**
+     * 按顺序重放进度文件，后面的记录覆盖前面的记录
+     */
+    private void loadProgress() {
+        if (progress != null) {
+            return;
+        }
+        progress = new HashMap<>();
+        progressRecords = 0;
+        liveRecords = 0;
+        if (progressFile.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(progressFile)))) {
+                if (in.readInt() == PROGRESS_MAGIC && in.readByte() == VERSION) {
+                    while (true) {
+                        String placementId = in.readUTF();
+                        String itemId = in.readUTF();
+                        int count = in.readInt();
+                        progressRecords++;
+                        if (count == REMOVED) {
+                            Map<String, Integer> removed = progress.remove(placementId);
+                            if (removed != null) {
+                                liveRecords -= removed.size();
+                            }
+                            continue;
+                        }
+                        if (progress.computeIfAbsent(placementId, k -> new HashMap<>()).put(itemId, count) == null) {
+                            liveRecords++;
+                        }
+                    }
+                }
+            } catch (EOFException e) {
+                // 读到文件末尾，最后一条记录可能不完整
+            } catch (IOException e) {
+                // 文件未能完整读取，保留原文件，新记录继续追加在后面
+                progressDamaged = true;
+                return;
+            }
+        }
+        // 重写为只包含最新状态的文件，同时丢弃末尾不完整的记录；文件不存在时写入文件头
+        try {
+            rewriteProgress();
+        } catch (IOException e) {
+            // 保持静默
+        }
+    }
+
+    private void appendProgressRecord(String placementId, String itemId, int count) {
+        try {
+            if (progressOut == null) {
+                progressOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(progressFile, true)));
+            }
+            writeProgressRecord(progressOut, placementId, itemId, count);
+            progressOut.flush();
+            progressRecords++;
+            compactProgressIfNeeded();
+        } catch (IOException e) {
+            // 保持静默
+        }
+    }
+
+    private void compactProgressIfNeeded() throws IOException {
+        if (!progressDamaged && progressRecords >= COMPACT_MIN_RECORDS && progressRecords > liveRecords * 4) {
+            rewriteProgress();
+        }
+    }
+
+    /**
+     * 把当前状态写入临时文件后替换原文件
+     */
+    private void rewriteProgress() throws IOException {
+        if (progressOut != null) {
+            progressOut.close();
+            progressOut = null;
+        }
+        folder.mkdirs();
+        File tempFile = new File(folder, progressFile.getName() + ".tmp");
+        int records = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(PROGRESS_MAGIC);
+            out.writeByte(VERSION);
+            for (Map.Entry<String, Map<String, Integer>> placementEntry : progress.entrySet()) {
+                for (Map.Entry<String, Integer> itemEntry : placementEntry.getValue().entrySet()) {
+                    writeProgressRecord(out, placementEntry.getKey(), itemEntry.getKey(), itemEntry.getValue());
+                    records++;
+                }
+            }
+        }
+        try {
+            Files.move(tempFile.toPath(), progressFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempFile.toPath(), progressFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        progressRecords = records;
+    }
+
+    private void writeProgressRecord(DataOutputStream out, String placementId, String itemId, int count) throws IOException {
+        out.writeUTF(placementId);
+        out.writeUTF(itemId);
+        out.writeInt(count);
+    }
+}
@@ -0,0 +1,128 @@
+package ch.endte.syncmatica.material;
+
+import ch.endte.syncmatica.ServerPlacement;
+import com.google.gson.JsonObject;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 后台材料统计任务，每个请求对应一个任务
+ * 同一文件的任务共享同一次解析（Parse），进度和结果来自这次解析
+ */
+public class MaterialJob {
+
+    public enum Status {
+        RUNNING("running"),
+        DONE("done"),
+        FAILED("failed");
+
+        private final String name;
+
+        Status(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final UUID jobId = UUID.randomUUID();
+    private final ServerPlacement placement;
+    private final Parse parse;
+
+    MaterialJob(ServerPlacement placement, Parse parse) {
+        this.placement = placement;
+        this.parse = parse;
+    }
+
+    public UUID getJobId() {
+        return jobId;
+    }
+
+    public ServerPlacement getPlacement() {
+        return placement;
+    }
+
+    public Status getStatus() {
+        return parse.status;
+    }
+
+    /**
+     * 文件按区域流式读取，读取完成之前该值可能继续增加
+     */
+    public int getRegionsTotal() {
+        return parse.regionsTotal.get();
+    }
+
+    public int getRegionsDone() {
+        return parse.regionsDone.get();
+    }
+
+    public long getBlocksTotal() {
+        return parse.blocksTotal.get();
+    }
+
+    public long getBlocksScanned() {
+        return parse.blocksScanned.get();
+    }
+
+    /**
+     * 统计结果，任务完成前为null
+     */
+    public JsonObject getResult() {
+        return parse.result;
+    }
+
+    public String getError() {
+        return parse.error;
+    }
+
+    long getFinishedAt() {
+        return parse.finishedAt;
+    }
+
+    /**
+     * 对一个文件（哈希）的一次解析，记录进度和结果
+     */
+    static class Parse implements MaterialCounter.ProgressListener {
+        private final AtomicInteger regionsTotal = new AtomicInteger();
+        private final AtomicInteger regionsDone = new AtomicInteger();
+        private final AtomicLong blocksTotal = new AtomicLong();
+        private final AtomicLong blocksScanned = new AtomicLong();
+        private volatile Status status = Status.RUNNING;
+        private volatile JsonObject result;
+        private volatile String error;
+        private volatile long finishedAt;
+
+        @Override
+        public void onRegionFound(long totalBlocks) {
+            regionsTotal.incrementAndGet();
+            blocksTotal.addAndGet(totalBlocks);
+        }
+
+        @Override
+        public void onBlocksScanned(long blocks) {
+            blocksScanned.addAndGet(blocks);
+        }
+
+        @Override
+        public void onRegionDone() {
+            regionsDone.incrementAndGet();
+        }
+
+        void complete(JsonObject result) {
+            this.result = result;
+            finishedAt = System.currentTimeMillis();
+            status = Status.DONE;
+        }
+
+        void fail(String error) {
+            this.error = error;
+            finishedAt = System.currentTimeMillis();
+            status = Status.FAILED;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ch.endte.syncmatica.material;
+
+import ch.endte.syncmatica.ServerPlacement;
+import com.google.gson.JsonObject;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 管理后台材料统计任务
+ * 每个请求都有自己的任务，但同一文件（相同哈希）同时只会解析一次，并发的请求共享这次解析
+ * 解析在独立的线程池中执行，不会占用HTTP处理线程
+ */
+public class MaterialJobManager {
+    private static final int WORKER_THREADS = 2;
+    // 已结束的任务保留一段时间，供客户端获取结果
+    private static final long FINISHED_JOB_RETENTION_MS = 10 * 60 * 1000L;
+
+    private final MaterialHttpServer server;
+    private final Map<UUID, MaterialJob.Parse> runningParsesByHash = new ConcurrentHashMap<>();
+    private final Map<UUID, MaterialJob> jobsById = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+
+    public MaterialJobManager(MaterialHttpServer server) {
+        this.server = server;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(WORKER_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "Syncmatica-MaterialJob-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 为投影提交统计任务，如果同一文件已在解析则新任务共享这次解析
+     */
+    public MaterialJob submit(ServerPlacement placement) {
+        pruneFinishedJobs();
+        MaterialJob.Parse parse = new MaterialJob.Parse();
+        MaterialJob.Parse existing = runningParsesByHash.putIfAbsent(placement.getHash(), parse);
+        MaterialJob job = new MaterialJob(placement, existing != null ? existing : parse);
+        jobsById.put(job.getJobId(), job);
+        if (existing != null) {
+            return job;
+        }
+        // 先登记再提交，保证解析结束时能从runningParsesByHash中移除自己
+        try {
+            executor.execute(() -> run(placement, parse));
+        } catch (RejectedExecutionException e) {
+            // 线程池已关闭，任务不会再运行
+            parse.fail(e.getMessage());
+            runningParsesByHash.remove(placement.getHash(), parse);
+        }
+        return job;
+    }
+
+    public MaterialJob getJob(UUID jobId) {
+        return jobsById.get(jobId);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        runningParsesByHash.clear();
+        jobsById.clear();
+    }
+
+    private void run(ServerPlacement placement, MaterialJob.Parse parse) {
+        try {
+            JsonObject result = server.getMaterialListFromPlacement(placement, parse);
+            parse.complete(result);
+        } catch (Exception e) {
+            parse.fail(e.getMessage());
+        } finally {
+            runningParsesByHash.remove(placement.getHash(), parse);
+        }
+    }
+
+    private void pruneFinishedJobs() {
+        long now = System.currentTimeMillis();
+        jobsById.values().removeIf(job -> job.getStatus() != MaterialJob.Status.RUNNING
+                && now - job.getFinishedAt() > FINISHED_JOB_RETENTION_MS);
+    }
+}
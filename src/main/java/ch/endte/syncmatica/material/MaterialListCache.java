@@ -0,0 +1,110 @@
+package ch.endte.syncmatica.material;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 材料清单缓存，以投影文件的哈希值（ServerPlacement.getHash()）为键
+ * 哈希值唯一对应文件内容，因此同一文件的重复请求只需一次查表，无需重新解析NBT
+ * 容量有限，超出时按LRU策略淘汰最久未使用的条目
+ */
+public class MaterialListCache {
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private final int capacity;
+    private final Map<UUID, Map<String, Integer>> entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public MaterialListCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MaterialListCache(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        // accessOrder = true，使LinkedHashMap按访问顺序排列，从而实现LRU
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Map<String, Integer>> eldest) {
+                return size() > MaterialListCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * 获取缓存的材料计数（物品ID -> 数量），未命中时返回null
+     */
+    public Map<String, Integer> get(UUID hash) {
+        if (hash == null) {
+            return null;
+        }
+        Map<String, Integer> counts;
+        synchronized (entries) {
+            counts = entries.get(hash);
+        }
+        if (counts == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return counts;
+    }
+
+    /**
+     * 是否已缓存，不计入命中统计
+     */
+    public boolean contains(UUID hash) {
+        if (hash == null) {
+            return false;
+        }
+        synchronized (entries) {
+            return entries.containsKey(hash);
+        }
+    }
+
+    /**
+     * 写入材料计数，缓存中保存的是不可修改的副本
+     */
+    public void put(UUID hash, Map<String, Integer> counts) {
+        if (hash == null || counts == null) {
+            return;
+        }
+        Map<String, Integer> copy = Collections.unmodifiableMap(new LinkedHashMap<>(counts));
+        synchronized (entries) {
+            entries.put(hash, copy);
+        }
+    }
+
+    public void invalidate(UUID hash) {
+        synchronized (entries) {
+            entries.remove(hash);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+}
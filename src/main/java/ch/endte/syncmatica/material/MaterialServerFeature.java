@@ -1,6 +1,7 @@
 package ch.endte.syncmatica.material;
 
 import ch.endte.syncmatica.Context;
+import ch.endte.syncmatica.ServerPlacement;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -44,6 +45,15 @@ public class MaterialServerFeature {
         }
     }
 
+    /**
+     * 投影文件已保存到本地，预先统计材料
+     */
+    public void onLitematicStored(ServerPlacement placement) {
+        if (materialHttpServer != null) {
+            materialHttpServer.precomputeMaterials(placement);
+        }
+    }
+
     public MaterialHttpServer getMaterialServer() {
         return materialHttpServer;
     }
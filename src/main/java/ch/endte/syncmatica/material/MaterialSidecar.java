@@ -0,0 +1,108 @@
+package ch.endte.syncmatica.material;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 预先计算好的材料统计，以二进制文件的形式保存在.litematic文件旁边（<hash>.materials）
+ * 格式：魔数、版本、文件哈希、条目数，然后是每个条目的方块ID和数量
+ * 读取时校验哈希，文件损坏或与投影不匹配时视为不存在
+ */
+public class MaterialSidecar {
+    private static final int MAGIC = 0x53594D4C;
+    private static final byte VERSION = 1;
+    public static final String EXTENSION = ".materials";
+
+    private MaterialSidecar() {
+    }
+
+    public static File getSidecarFile(File litematicFolder, UUID hash) {
+        return new File(litematicFolder, hash.toString() + EXTENSION);
+    }
+
+    public static boolean exists(File litematicFolder, UUID hash) {
+        return getSidecarFile(litematicFolder, hash).isFile();
+    }
+
+    /**
+     * @return 方块ID -> 数量，文件不存在或无效时返回null
+     */
+    public static Map<String, Integer> read(File litematicFolder, UUID hash) {
+        File sidecarFile = getSidecarFile(litematicFolder, hash);
+        if (!sidecarFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(sidecarFile)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                return null;
+            }
+            UUID storedHash = new UUID(in.readLong(), in.readLong());
+            if (!storedHash.equals(hash)) {
+                return null;
+            }
+            int entryCount = in.readInt();
+            if (entryCount < 0) {
+                return null;
+            }
+            Map<String, Integer> materialCounts = new HashMap<>();
+            for (int i = 0; i < entryCount; i++) {
+                String blockId = in.readUTF();
+                materialCounts.put(blockId, in.readInt());
+            }
+            return materialCounts;
+        } catch (IOException e) {
+            // 保持静默
+            return null;
+        }
+    }
+
+    /**
+     * 先写入临时文件再替换，避免读到写了一半的文件
+     * 预计算任务和HTTP请求可能同时写同一个哈希，所以每次写入都使用独立的临时文件
+     */
+    public static boolean write(File litematicFolder, UUID hash, Map<String, Integer> materialCounts) {
+        File sidecarFile = getSidecarFile(litematicFolder, hash);
+        File tempFile;
+        try {
+            tempFile = File.createTempFile(hash.toString() + EXTENSION, ".tmp", litematicFolder);
+        } catch (IOException e) {
+            // 保持静默
+            return false;
+        }
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeLong(hash.getMostSignificantBits());
+                out.writeLong(hash.getLeastSignificantBits());
+                out.writeInt(materialCounts.size());
+                for (Map.Entry<String, Integer> entry : materialCounts.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeInt(entry.getValue());
+                }
+            }
+            try {
+                Files.move(tempFile.toPath(), sidecarFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), sidecarFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (IOException e) {
+            // 保持静默
+            tempFile.delete();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package ch.endte.syncmatica.material;
+
+/**
+ * 读取Litematica打包的方块状态数组（BlockStates）
+ * Litematica的LitematicaBitArray把所有条目连续地写成一条比特流，
+ * 条目可能跨越两个long，因此不能按"每个long存64/bits个条目"的方式解码
+ * 这里顺序遍历每个long，一次取出其中的全部条目，不做逐个条目的除法和取模
+ */
+public final class PackedBitArrayReader {
+
+    private PackedBitArrayReader() {
+    }
+
+    /**
+     * Litematica对调色板使用的比特数，最小为2位
+     */
+    public static int getBitsPerEntry(int paletteSize) {
+        return Math.max(2, Integer.SIZE - Integer.numberOfLeadingZeros(paletteSize - 1));
+    }
+
+    /**
+     * 数组最多能容纳的条目数
+     */
+    public static long getCapacity(long[] data, int bits) {
+        return (long) data.length * Long.SIZE / bits;
+    }
+
+    /**
+     * 随机读取单个条目
+     */
+    public static int get(long[] data, int bits, long index) {
+        long bitPos = index * bits;
+        int longIndex = (int) (bitPos >>> 6);
+        int offset = (int) (bitPos & 63);
+        long mask = (1L << bits) - 1L;
+        if (offset + bits <= Long.SIZE) {
+            return (int) ((data[longIndex] >>> offset) & mask);
+        }
+        return (int) (((data[longIndex] >>> offset) | (data[longIndex + 1] << (Long.SIZE - offset))) & mask);
+    }
+
+    /**
+     * 统计[startIndex, endIndex)范围内每个条目值出现的次数
+     * 超出直方图长度的值（调色板索引越界）会被忽略，超出数组容量的部分会被截断
+     */
+    public static void countEntries(long[] data, int bits, long startIndex, long endIndex, int[] histogram) {
+        endIndex = Math.min(endIndex, getCapacity(data, bits));
+        if (startIndex >= endIndex) {
+            return;
+        }
+        if ((Long.SIZE % bits) == 0) {
+            countAligned(data, bits, startIndex, endIndex, histogram);
+        } else {
+            countUnaligned(data, bits, startIndex, endIndex, histogram);
+        }
+    }
+
+    /**
+     * 比特数是2的幂时条目不会跨越long，可以整字处理
+     */
+    private static void countAligned(long[] data, int bits, long startIndex, long endIndex, int[] histogram) {
+        int perLong = Long.SIZE / bits;
+        int perLongShift = Integer.numberOfTrailingZeros(perLong);
+        long mask = (1L << bits) - 1L;
+        int histogramSize = histogram.length;
+        long index = startIndex;
+
+        // 开头不完整的long
+        while (index < endIndex && (index & (perLong - 1)) != 0) {
+            int value = (int) ((data[(int) (index >>> perLongShift)] >>> ((index & (perLong - 1)) * bits)) & mask);
+            if (value < histogramSize) {
+                histogram[value]++;
+            }
+            index++;
+        }
+
+        // 完整的long
+        int longIndex = (int) (index >>> perLongShift);
+        int fullLongs = (int) ((endIndex - index) >>> perLongShift);
+        for (int i = 0; i < fullLongs; i++) {
+            long word = data[longIndex++];
+            for (int k = 0; k < perLong; k++) {
+                int value = (int) (word & mask);
+                if (value < histogramSize) {
+                    histogram[value]++;
+                }
+                word >>>= bits;
+            }
+        }
+        index += (long) fullLongs << perLongShift;
+
+        // 结尾不完整的long
+        if (index < endIndex) {
+            long word = data[longIndex];
+            while (index < endIndex) {
+                int value = (int) (word & mask);
+                if (value < histogramSize) {
+                    histogram[value]++;
+                }
+                word >>>= bits;
+                index++;
+            }
+        }
+    }
+
+    /**
+     * 通用情况：条目可能跨越两个long
+     */
+    private static void countUnaligned(long[] data, int bits, long startIndex, long endIndex, int[] histogram) {
+        long mask = (1L << bits) - 1L;
+        int histogramSize = histogram.length;
+        long bitPos = startIndex * bits;
+        int longIndex = (int) (bitPos >>> 6);
+        int offset = (int) (bitPos & 63);
+        long word = data[longIndex];
+
+        for (long remaining = endIndex - startIndex; remaining > 0; remaining--) {
+            int value;
+            int next = offset + bits;
+            if (next < Long.SIZE) {
+                value = (int) ((word >>> offset) & mask);
+                offset = next;
+            } else if (next == Long.SIZE) {
+                value = (int) (word >>> offset);
+                offset = 0;
+                longIndex++;
+                if (remaining > 1) {
+                    word = data[longIndex];
+                }
+            } else {
+                long nextWord = data[++longIndex];
+                value = (int) (((word >>> offset) | (nextWord << (Long.SIZE - offset))) & mask);
+                word = nextWord;
+                offset = next - Long.SIZE;
+            }
+            if (value < histogramSize) {
+                histogram[value]++;
+            }
+        }
+    }
+}
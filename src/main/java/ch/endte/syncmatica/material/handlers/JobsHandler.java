@@ -0,0 +1,87 @@
+package ch.endte.syncmatica.material.handlers;
+
+import ch.endte.syncmatica.material.MaterialHttpServer;
+import ch.endte.syncmatica.material.MaterialJob;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 处理查询异步材料统计任务进度的API请求，任务完成后返回材料清单
+ */
+public class JobsHandler implements HttpHandler {
+    private final MaterialHttpServer server;
+    private final Gson gson;
+
+    public JobsHandler(MaterialHttpServer server, Gson gson) {
+        this.server = server;
+        this.gson = gson;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        // 确保已加载翻译
+        server.ensureTranslationsLoaded();
+
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            server.sendResponse(exchange, 405, server.getTranslatedText("syncmatica.error.method_not_supported", "Method not supported"));
+            return;
+        }
+
+        Map<String, String> params = server.parseQueryParams(exchange.getRequestURI().getQuery());
+        String jobIdParam = params.get("id");
+        if (jobIdParam == null || jobIdParam.isEmpty()) {
+            server.sendResponse(exchange, 400, server.getTranslatedText("syncmatica.error.missing_job_id", "Missing job ID parameter"));
+            return;
+        }
+
+        UUID jobId;
+        try {
+            jobId = UUID.fromString(jobIdParam.trim());
+        } catch (IllegalArgumentException e) {
+            server.sendResponse(exchange, 400, server.getTranslatedText("syncmatica.error.invalid_job_id", "Invalid job ID format") + ": " + e.getMessage());
+            return;
+        }
+
+        MaterialJob job = server.getJobManager().getJob(jobId);
+        if (job == null) {
+            server.sendResponse(exchange, 404, server.getTranslatedText("syncmatica.error.job_not_found", "Job not found"));
+            return;
+        }
+
+        try {
+            String placementId = job.getPlacement().getId().toString();
+            JsonObject response = new JsonObject();
+            response.addProperty("success", job.getStatus() != MaterialJob.Status.FAILED);
+            response.addProperty("jobId", job.getJobId().toString());
+            response.addProperty("placementId", placementId);
+            response.addProperty("placementName", job.getPlacement().getName());
+            response.addProperty("status", job.getStatus().getName());
+            response.addProperty("regionsDone", job.getRegionsDone());
+            response.addProperty("regionsTotal", job.getRegionsTotal());
+            response.addProperty("blocksScanned", job.getBlocksScanned());
+            response.addProperty("blocksTotal", job.getBlocksTotal());
+
+            if (job.getStatus() == MaterialJob.Status.DONE && job.getResult() != null) {
+                // 每次返回副本，收集状态可能已经变化
+                JsonObject materialData = job.getResult().deepCopy();
+                server.addCollectionStatus(materialData, placementId);
+                response.add("materials", materialData);
+            } else if (job.getStatus() == MaterialJob.Status.FAILED) {
+                response.addProperty("error", job.getError());
+            }
+
+            server.sendResponse(exchange, 200, gson.toJson(response));
+        } catch (Exception e) {
+            JsonObject errorResponse = new JsonObject();
+            errorResponse.addProperty("success", false);
+            errorResponse.addProperty("error", e.getMessage());
+            server.sendResponse(exchange, 500, gson.toJson(errorResponse));
+        }
+    }
+}
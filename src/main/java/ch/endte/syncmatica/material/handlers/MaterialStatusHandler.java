@@ -15,7 +15,6 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.util.Collection;
 import java.util.Map;
 import java.util.UUID;
 
@@ -105,16 +104,9 @@ public class MaterialStatusHandler implements HttpHandler {
             }
             
             // 验证投影存在
-            boolean placementExists = false;
-            Collection<ServerPlacement> placements = context.getSyncmaticManager().getAll();
-            for (ServerPlacement p : placements) {
-                if (p.getId().equals(id)) {
-                    placementExists = true;
-                    break;
-                }
-            }
+            ServerPlacement placement = context.getSyncmaticManager().getPlacement(id);
             
-            if (!placementExists) {
+            if (placement == null) {
                 JsonObject errorResponse = new JsonObject();
                 errorResponse.addProperty("success", false);
                 errorResponse.addProperty("error", server.getTranslatedText("syncmatica.error.placement_not_found", "Placement not found"));
@@ -127,16 +119,10 @@ public class MaterialStatusHandler implements HttpHandler {
             try {
                 // 获取投影物品数据
                 JsonObject materialData = null;
-                Collection<ServerPlacement> allPlacements = context.getSyncmaticManager().getAll();
-                for (ServerPlacement p : allPlacements) {
-                    if (p.getId().equals(id)) {
-                        try {
-                            materialData = server.getMaterialListFromPlacement(p);
-                            break;
-                        } catch (Exception e) {
-                            // 保持静默
-                        }
-                    }
+                try {
+                    materialData = server.getMaterialListFromPlacement(placement);
+                } catch (Exception e) {
+                    // 保持静默
                 }
                 
                 if (materialData != null && materialData.has("items")) {
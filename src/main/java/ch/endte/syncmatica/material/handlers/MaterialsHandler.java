@@ -3,14 +3,13 @@ package ch.endte.syncmatica.material.handlers;
 import ch.endte.syncmatica.Context;
 import ch.endte.syncmatica.ServerPlacement;
 import ch.endte.syncmatica.material.MaterialHttpServer;
+import ch.endte.syncmatica.material.MaterialJob;
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 
 import java.io.IOException;
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -67,20 +66,28 @@ public class MaterialsHandler implements HttpHandler {
 
         try {
             // 查找匹配的投影
-            ServerPlacement placement = null;
-            Collection<ServerPlacement> placements = context.getSyncmaticManager().getAll();
-            for (ServerPlacement p : placements) {
-                if (p.getId().equals(id)) {
-                    placement = p;
-                    break;
-                }
-            }
+            ServerPlacement placement = context.getSyncmaticManager().getPlacement(id);
 
             if (placement == null) {
                 server.sendResponse(exchange, 404, server.getTranslatedText("syncmatica.error.placement_not_found", "Placement not found"));
                 return;
             }
 
+            // 异步模式：缓存未命中时提交后台任务，立即返回202和任务ID
+            if ("true".equalsIgnoreCase(params.get("async"))
+                    && !server.getMaterialListCache().contains(placement.getHash())) {
+                MaterialJob job = server.getJobManager().submit(placement);
+                JsonObject response = new JsonObject();
+                response.addProperty("success", true);
+                response.addProperty("placementId", placement.getId().toString());
+                response.addProperty("placementName", placement.getName());
+                response.addProperty("jobId", job.getJobId().toString());
+                response.addProperty("status", job.getStatus().getName());
+                response.addProperty("statusUrl", "/api/jobs?id=" + job.getJobId());
+                server.sendResponse(exchange, 202, gson.toJson(response));
+                return;
+            }
+
             // 尝试获取真实材料列表
             JsonObject materialData;
             try {
@@ -90,31 +97,7 @@ public class MaterialsHandler implements HttpHandler {
             }
             
             // 将收集状态添加到材料列表中
-            if (materialData.has("items")) {
-                JsonArray items = materialData.getAsJsonArray("items");
-                Map<String, Integer> collectionStatus = server.getMaterialCollectionStatus(placementId);
-                
-                for (int i = 0; i < items.size(); i++) {
-                    JsonObject item = items.get(i).getAsJsonObject();
-                    if (item.has("itemId") && item.has("count")) {
-                        String itemId = item.get("itemId").getAsString();
-                        int totalCount = item.get("count").getAsInt();
-                        int collectedCount = collectionStatus.getOrDefault(itemId, 0);
-                        
-                        // 确保收集数量不超过总数
-                        if (collectedCount > totalCount) {
-                            collectedCount = totalCount;
-                        }
-                        
-                        item.addProperty("collectedCount", collectedCount);
-                        item.addProperty("remaining", totalCount - collectedCount);
-                        item.addProperty("percentComplete", totalCount > 0 ? (collectedCount * 100 / totalCount) : 0);
-                        
-                        // 保留向后兼容
-                        item.addProperty("collected", collectedCount >= totalCount);
-                    }
-                }
-            }
+            server.addCollectionStatus(materialData, placementId);
             
             JsonObject response = new JsonObject();
             response.addProperty("success", true);
@@ -0,0 +1,129 @@
+package ch.endte.syncmatica.material.handlers;
+
+import ch.endte.syncmatica.Context;
+import ch.endte.syncmatica.ServerPlacement;
+import ch.endte.syncmatica.ServerPosition;
+import ch.endte.syncmatica.material.MaterialHttpServer;
+import ch.endte.syncmatica.spatial.Box;
+import ch.endte.syncmatica.spatial.SpatialIndex;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 按空间位置查询投影的API请求
+ * mode=point：覆盖x,y,z这个方块的投影
+ * mode=box：与x1,y1,z1到x2,y2,z2的范围相交的投影
+ * mode=nearest：离x,y,z最近的k个投影（默认10个）
+ * dimension参数缺省时为主世界
+ */
+public class PlacementQueryHandler implements HttpHandler {
+    private static final int DEFAULT_NEAREST = 10;
+    private static final int MAX_NEAREST = 1000;
+
+    private final MaterialHttpServer server;
+    private final Context context;
+    private final Gson gson;
+
+    public PlacementQueryHandler(MaterialHttpServer server, Context context, Gson gson) {
+        this.server = server;
+        this.context = context;
+        this.gson = gson;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            server.sendResponse(exchange, 405, server.getTranslatedText("syncmatica.error.method_not_supported", "Method not supported"));
+            return;
+        }
+
+        Map<String, String> params = server.parseQueryParams(exchange.getRequestURI().getQuery());
+        String dimension = params.getOrDefault("dimension", ServerPosition.OVERWORLD_DIMENSION_ID);
+        String mode = params.getOrDefault("mode", "point");
+        SpatialIndex index = context.getSyncmaticManager().getSpatialIndex();
+
+        Collection<ServerPlacement> placements;
+        try {
+            switch (mode) {
+                case "point":
+                    placements = index.getPlacementsAt(dimension, readPos(params, "x", "y", "z"));
+                    break;
+                case "box":
+                    placements = index.getPlacementsIn(dimension, Box.of(readPos(params, "x1", "y1", "z1"), readPos(params, "x2", "y2", "z2")));
+                    break;
+                case "nearest":
+                    int k = params.containsKey("k") ? Integer.parseInt(params.get("k").trim()) : DEFAULT_NEAREST;
+                    placements = index.getNearest(dimension, readPos(params, "x", "y", "z"), Math.min(k, MAX_NEAREST));
+                    break;
+                default:
+                    sendError(exchange, 400, "Unknown query mode: " + mode);
+                    return;
+            }
+        } catch (IllegalArgumentException e) {
+            // 缺少坐标参数或者参数不是整数
+            sendError(exchange, 400, e.getMessage());
+            return;
+        }
+
+        try {
+            JsonArray placementsArray = new JsonArray();
+            for (ServerPlacement placement : placements) {
+                JsonObject placementJson = new JsonObject();
+                placementJson.addProperty("id", placement.getId().toString());
+                placementJson.addProperty("name", placement.getName());
+                placementJson.addProperty("dimension", placement.getDimension());
+                placementJson.addProperty("posX", placement.getPosition().getX());
+                placementJson.addProperty("posY", placement.getPosition().getY());
+                placementJson.addProperty("posZ", placement.getPosition().getZ());
+                placementJson.addProperty("owner", placement.getOwner().getName());
+                Box bounds = index.getBounds(placement.getId());
+                if (bounds != null) {
+                    JsonObject boundsJson = new JsonObject();
+                    boundsJson.addProperty("minX", bounds.minX);
+                    boundsJson.addProperty("minY", bounds.minY);
+                    boundsJson.addProperty("minZ", bounds.minZ);
+                    boundsJson.addProperty("maxX", bounds.maxX);
+                    boundsJson.addProperty("maxY", bounds.maxY);
+                    boundsJson.addProperty("maxZ", bounds.maxZ);
+                    placementJson.add("bounds", boundsJson);
+                }
+                placementsArray.add(placementJson);
+            }
+
+            JsonObject response = new JsonObject();
+            response.addProperty("success", true);
+            response.add("placements", placementsArray);
+
+            server.sendResponse(exchange, 200, gson.toJson(response));
+        } catch (Exception e) {
+            sendError(exchange, 500, e.getMessage());
+        }
+    }
+
+    private BlockPos readPos(Map<String, String> params, String x, String y, String z) {
+        return new BlockPos(readInt(params, x), readInt(params, y), readInt(params, z));
+    }
+
+    private int readInt(Map<String, String> params, String key) {
+        String value = params.get(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing parameter: " + key);
+        }
+        return Integer.parseInt(value.trim());
+    }
+
+    private void sendError(HttpExchange exchange, int statusCode, String error) throws IOException {
+        JsonObject errorResponse = new JsonObject();
+        errorResponse.addProperty("success", false);
+        errorResponse.addProperty("error", error);
+        server.sendResponse(exchange, statusCode, gson.toJson(errorResponse));
+    }
+}
@@ -64,14 +64,7 @@ public class TextHandler implements HttpHandler {
 
         try {
             // 查找匹配的投影
-            ServerPlacement placement = null;
-            Collection<ServerPlacement> placements = context.getSyncmaticManager().getAll();
-            for (ServerPlacement p : placements) {
-                if (p.getId().equals(id)) {
-                    placement = p;
-                    break;
-                }
-            }
+            ServerPlacement placement = context.getSyncmaticManager().getPlacement(id);
 
             if (placement == null) {
                 server.sendTextResponse(exchange, 404, server.getTranslatedText("syncmatica.error.placement_not_found", "Placement not found"));
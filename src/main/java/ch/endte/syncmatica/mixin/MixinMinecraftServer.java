@@ -1,5 +1,6 @@
 package ch.endte.syncmatica.mixin;
 
+import ch.endte.syncmatica.Context;
 import ch.endte.syncmatica.FileStorage;
 import ch.endte.syncmatica.SyncmaticManager;
 import ch.endte.syncmatica.Syncmatica;
@@ -12,6 +13,7 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
+import java.util.function.BooleanSupplier;
 import java.util.function.Function;
 
 @Mixin(MinecraftServer.class)
@@ -28,6 +30,14 @@ public class MixinMinecraftServer {
         ).startup();
     }
 
+    @Inject(method = "tick", at = @At("TAIL"))
+    public void tickSyncmatica(final BooleanSupplier shouldKeepTicking, final CallbackInfo ci) {
+        final Context con = Syncmatica.getContext(Syncmatica.SERVER_CONTEXT);
+        if (con != null && con.isStarted()) {
+            ((ServerCommunicationManager) con.getCommunicationManager()).tick();
+        }
+    }
+
     
     @Inject(method = "shutdown", at = @At("TAIL"))
     public void shutdownSyncmatica(final CallbackInfo ci) {
@@ -7,6 +7,8 @@ import org.apache.logging.log4j.LogManager;
 public class DebugService extends AbstractService {
 
     private boolean doPacketLogging = false;
+    private boolean verifyMaterialDecoding = false;
+    private boolean doCompressionLogging = false;
 
     public void logReceivePacket(final Identifier packageType) {
         if (doPacketLogging) {
@@ -24,9 +26,27 @@ public class DebugService extends AbstractService {
         }
     }
 
+    public void logCompression(final String litematicName, final long rawBytes, final long wireBytes) {
+        if (doCompressionLogging) {
+            LogManager.getLogger(Syncmatica.class).info(
+                    "Syncmatica - sent litematic[name={}] raw={} wire={} ratio={}",
+                    litematicName,
+                    rawBytes,
+                    wireBytes,
+                    rawBytes == 0 ? "n/a" : String.format("%.3f", (double) wireBytes / rawBytes)
+            );
+        }
+    }
+
+    public boolean isVerifyMaterialDecoding() {
+        return verifyMaterialDecoding;
+    }
+
     @Override
     public void getDefaultConfiguration(final IServiceConfiguration configuration) {
         configuration.saveBoolean("doPackageLogging", false);
+        configuration.saveBoolean("verifyMaterialDecoding", false);
+        configuration.saveBoolean("doCompressionLogging", false);
     }
 
     @Override
@@ -37,6 +57,8 @@ public class DebugService extends AbstractService {
     @Override
     public void configure(final IServiceConfiguration configuration) {
         configuration.loadBoolean("doPackageLogging", b -> doPacketLogging = b);
+        configuration.loadBoolean("verifyMaterialDecoding", b -> verifyMaterialDecoding = b);
+        configuration.loadBoolean("doCompressionLogging", b -> doCompressionLogging = b);
     }
 
     @Override
@@ -0,0 +1,59 @@
+package ch.endte.syncmatica.service;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+public class MaterialService extends AbstractService {
+
+    // 0 or less picks half of the processors of the machine the server runs on
+    public static final Integer PARALLELISM_DEFAULT = 0;
+
+    Integer parallelism = PARALLELISM_DEFAULT;
+    private ForkJoinPool countingPool = null;
+
+    public synchronized ForkJoinPool getCountingPool() {
+        if (countingPool == null) {
+            countingPool = new ForkJoinPool(getParallelism(), pool -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("Syncmatica-Materials-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        }
+        return countingPool;
+    }
+
+    public int getParallelism() {
+        if (parallelism <= 0) {
+            return Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        }
+        return parallelism;
+    }
+
+    @Override
+    public void getDefaultConfiguration(final IServiceConfiguration configuration) {
+        configuration.saveInteger("parallelism", PARALLELISM_DEFAULT);
+    }
+
+    @Override
+    public String getConfigKey() {
+        return "material";
+    }
+
+    @Override
+    public void configure(final IServiceConfiguration configuration) {
+        configuration.loadInteger("parallelism", i -> parallelism = i);
+    }
+
+    @Override
+    public void startup() {
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        if (countingPool != null) {
+            countingPool.shutdownNow();
+            countingPool = null;
+        }
+    }
+}
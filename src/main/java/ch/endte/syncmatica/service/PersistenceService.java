@@ -0,0 +1,106 @@
+package ch.endte.syncmatica.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+public class PersistenceService extends AbstractService {
+
+    public static final Boolean WRITE_BEHIND_DEFAULT = false;
+    public static final Integer WRITE_DELAY_DEFAULT = 2000;
+    public static final Boolean JOURNAL_DEFAULT = false;
+
+    Boolean writeBehind = WRITE_BEHIND_DEFAULT;
+    Integer writeDelay = WRITE_DELAY_DEFAULT;
+    Boolean journal = JOURNAL_DEFAULT;
+    private ScheduledExecutorService executor = null;
+    private final Map<Runnable, ScheduledFuture<?>> scheduled = new HashMap<>();
+
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    public boolean isJournal() {
+        return journal;
+    }
+
+    // requests for a writer that is already scheduled are folded into the pending write
+    // without write-behind the journal still fsyncs and compacts on the persistence thread, just without the delay
+    public synchronized void requestWrite(final Runnable writer) {
+        if (executor == null) {
+            writer.run();
+            return;
+        }
+        if (scheduled.containsKey(writer)) {
+            return;
+        }
+        scheduled.put(writer, executor.schedule(() -> {
+            synchronized (this) {
+                scheduled.remove(writer);
+            }
+            writer.run();
+        }, writeBehind ? Math.max(0, writeDelay) : 0, TimeUnit.MILLISECONDS));
+    }
+
+    @Override
+    public void getDefaultConfiguration(final IServiceConfiguration configuration) {
+        configuration.saveBoolean("writeBehind", WRITE_BEHIND_DEFAULT);
+        configuration.saveInteger("writeDelay", WRITE_DELAY_DEFAULT);
+        configuration.saveBoolean("journal", JOURNAL_DEFAULT);
+    }
+
+    @Override
+    public String getConfigKey() {
+        return "persistence";
+    }
+
+    @Override
+    public void configure(final IServiceConfiguration configuration) {
+        configuration.loadBoolean("writeBehind", b -> writeBehind = b);
+        configuration.loadInteger("writeDelay", i -> writeDelay = i);
+        configuration.loadBoolean("journal", b -> journal = b);
+    }
+
+    @Override
+    public synchronized void startup() {
+        if ((writeBehind || journal) && executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "Syncmatica-Persistence");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    // pending writes are flushed before the service stops
+    @Override
+    public void shutdown() {
+        final ScheduledExecutorService stopping;
+        final Collection<Runnable> pending;
+        synchronized (this) {
+            stopping = executor;
+            executor = null;
+            pending = new ArrayList<>(scheduled.keySet());
+            for (final ScheduledFuture<?> future : scheduled.values()) {
+                future.cancel(false);
+            }
+            scheduled.clear();
+        }
+        if (stopping != null) {
+            stopping.shutdown();
+            try {
+                stopping.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (final Runnable writer : pending) {
+            writer.run();
+        }
+    }
+}
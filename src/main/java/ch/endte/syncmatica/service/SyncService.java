@@ -0,0 +1,71 @@
+package ch.endte.syncmatica.service;
+
+public class SyncService extends AbstractService {
+
+    public static final Integer PAGE_BYTES_DEFAULT = 32768;
+    public static final Integer PAGES_PER_TICK_DEFAULT = 1;
+    public static final Integer CHANGE_LOG_SIZE_DEFAULT = 4096;
+    public static final Boolean INTEREST_MANAGEMENT_DEFAULT = false;
+    public static final Integer INTEREST_RADIUS_DEFAULT = 512;
+
+    // a page is closed once it grows past this size, a single placement never gets split
+    private static final int MIN_PAGE_BYTES = 1024;
+    private static final int MAX_PAGE_BYTES = 1048576 / 2;
+
+    Integer pageBytes = PAGE_BYTES_DEFAULT;
+    Integer pagesPerTick = PAGES_PER_TICK_DEFAULT;
+    Integer changeLogSize = CHANGE_LOG_SIZE_DEFAULT;
+    Boolean interestManagement = INTEREST_MANAGEMENT_DEFAULT;
+    Integer interestRadius = INTEREST_RADIUS_DEFAULT;
+
+    public int getPageBytes() {
+        return Math.max(MIN_PAGE_BYTES, Math.min(MAX_PAGE_BYTES, pageBytes));
+    }
+
+    public int getPagesPerTick() {
+        return Math.max(1, pagesPerTick);
+    }
+
+    public int getChangeLogSize() {
+        return Math.max(0, changeLogSize);
+    }
+
+    public boolean isInterestManagement() {
+        return interestManagement;
+    }
+
+    public int getInterestRadius() {
+        return Math.max(0, interestRadius);
+    }
+
+    @Override
+    public void getDefaultConfiguration(final IServiceConfiguration configuration) {
+        configuration.saveInteger("pageBytes", PAGE_BYTES_DEFAULT);
+        configuration.saveInteger("pagesPerTick", PAGES_PER_TICK_DEFAULT);
+        configuration.saveInteger("changeLogSize", CHANGE_LOG_SIZE_DEFAULT);
+        configuration.saveBoolean("interestManagement", INTEREST_MANAGEMENT_DEFAULT);
+        configuration.saveInteger("interestRadius", INTEREST_RADIUS_DEFAULT);
+    }
+
+    @Override
+    public String getConfigKey() {
+        return "sync";
+    }
+
+    @Override
+    public void configure(final IServiceConfiguration configuration) {
+        configuration.loadInteger("pageBytes", i -> pageBytes = i);
+        configuration.loadInteger("pagesPerTick", i -> pagesPerTick = i);
+        configuration.loadInteger("changeLogSize", i -> changeLogSize = i);
+        configuration.loadBoolean("interestManagement", b -> interestManagement = b);
+        configuration.loadInteger("interestRadius", i -> interestRadius = i);
+    }
+
+    @Override
+    public void startup() {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
@@ -0,0 +1,52 @@
+package ch.endte.syncmatica.service;
+
+import ch.endte.syncmatica.communication.ExchangeTarget;
+
+public class TransferService extends AbstractService {
+
+    public static final Integer WINDOW_SIZE_DEFAULT = 8;
+    public static final Integer CHUNK_SIZE_DEFAULT = 16384;
+
+    // a chunk packet carries the placement uuid, the chunk length and the frame header in front of the data
+    private static final int CHUNK_HEADER_SIZE = 25;
+    private static final int MIN_CHUNK_SIZE = 1024;
+    public static final int MAX_SERVERBOUND_CHUNK_SIZE = 32767 - CHUNK_HEADER_SIZE;
+    public static final int MAX_CLIENTBOUND_CHUNK_SIZE = 1048576 - CHUNK_HEADER_SIZE;
+
+    Integer windowSize = WINDOW_SIZE_DEFAULT;
+    Integer chunkSize = CHUNK_SIZE_DEFAULT;
+
+    public int getWindowSize() {
+        return Math.max(1, windowSize);
+    }
+
+    public int getChunkSize(final ExchangeTarget target) {
+        final int max = target.isServer() ? MAX_CLIENTBOUND_CHUNK_SIZE : MAX_SERVERBOUND_CHUNK_SIZE;
+        return Math.max(MIN_CHUNK_SIZE, Math.min(max, chunkSize));
+    }
+
+    @Override
+    public void getDefaultConfiguration(final IServiceConfiguration configuration) {
+        configuration.saveInteger("windowSize", WINDOW_SIZE_DEFAULT);
+        configuration.saveInteger("chunkSize", CHUNK_SIZE_DEFAULT);
+    }
+
+    @Override
+    public String getConfigKey() {
+        return "transfer";
+    }
+
+    @Override
+    public void configure(final IServiceConfiguration configuration) {
+        configuration.loadInteger("windowSize", i -> windowSize = i);
+        configuration.loadInteger("chunkSize", i -> chunkSize = i);
+    }
+
+    @Override
+    public void startup() {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
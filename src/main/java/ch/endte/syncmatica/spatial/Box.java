@@ -0,0 +1,69 @@
+package ch.endte.syncmatica.spatial;
+
+import net.minecraft.util.math.BlockPos;
+
+// block aligned box, both corners inclusive
+public class Box {
+    public final int minX;
+    public final int minY;
+    public final int minZ;
+    public final int maxX;
+    public final int maxY;
+    public final int maxZ;
+
+    public Box(final int x1, final int y1, final int z1, final int x2, final int y2, final int z2) {
+        minX = Math.min(x1, x2);
+        minY = Math.min(y1, y2);
+        minZ = Math.min(z1, z2);
+        maxX = Math.max(x1, x2);
+        maxY = Math.max(y1, y2);
+        maxZ = Math.max(z1, z2);
+    }
+
+    public static Box of(final BlockPos a, final BlockPos b) {
+        return new Box(a.getX(), a.getY(), a.getZ(), b.getX(), b.getY(), b.getZ());
+    }
+
+    public boolean contains(final BlockPos pos) {
+        return pos.getX() >= minX && pos.getX() <= maxX
+                && pos.getY() >= minY && pos.getY() <= maxY
+                && pos.getZ() >= minZ && pos.getZ() <= maxZ;
+    }
+
+    public boolean intersects(final Box other) {
+        return other.maxX >= minX && other.minX <= maxX
+                && other.maxY >= minY && other.minY <= maxY
+                && other.maxZ >= minZ && other.minZ <= maxZ;
+    }
+
+    public Box union(final Box other) {
+        return new Box(
+                Math.min(minX, other.minX),
+                Math.min(minY, other.minY),
+                Math.min(minZ, other.minZ),
+                Math.max(maxX, other.maxX),
+                Math.max(maxY, other.maxY),
+                Math.max(maxZ, other.maxZ)
+        );
+    }
+
+    // 0 if the position lies inside the box
+    public double getSquaredDistance(final BlockPos pos) {
+        final double dx = axisDistance(pos.getX(), minX, maxX);
+        final double dy = axisDistance(pos.getY(), minY, maxY);
+        final double dz = axisDistance(pos.getZ(), minZ, maxZ);
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static int axisDistance(final int value, final int min, final int max) {
+        if (value < min) {
+            return min - value;
+        }
+        return Math.max(0, value - max);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%d, %d, %d -> %d, %d, %d]", minX, minY, minZ, maxX, maxY, maxZ);
+    }
+}
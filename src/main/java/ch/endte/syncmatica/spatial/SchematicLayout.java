@@ -0,0 +1,55 @@
+package ch.endte.syncmatica.spatial;
+
+import ch.endte.syncmatica.material.LitematicStreamReader;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+// the sub regions of a litematic as they lie relative to the schematic origin before any placement transform
+public class SchematicLayout {
+
+    private final Collection<Region> regions;
+
+    private SchematicLayout(final Collection<Region> regions) {
+        this.regions = regions;
+    }
+
+    public static SchematicLayout read(final File litematic) throws IOException {
+        final Collection<Region> regions = new ArrayList<>();
+        LitematicStreamReader.readLayout(litematic, (name, posX, posY, posZ, sizeX, sizeY, sizeZ) ->
+                regions.add(new Region(name, new BlockPos(posX, posY, posZ), new BlockPos(sizeX, sizeY, sizeZ)))
+        );
+        return new SchematicLayout(regions);
+    }
+
+    public Collection<Region> getRegions() {
+        return regions;
+    }
+
+    public static class Region {
+        public final String name;
+        public final BlockPos position;
+        public final BlockPos size;
+
+        Region(final String name, final BlockPos position, final BlockPos size) {
+            this.name = name;
+            this.position = position;
+            this.size = size;
+        }
+
+        // litematica allows negative sizes, the region then extends from its position towards negative coordinates
+        public BlockPos getEndOffset() {
+            return new BlockPos(endOffset(size.getX()), endOffset(size.getY()), endOffset(size.getZ()));
+        }
+
+        private static int endOffset(final int size) {
+            if (size >= 0) {
+                return Math.max(0, size - 1);
+            }
+            return size + 1;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package ch.endte.syncmatica.spatial;
+
+import ch.endte.syncmatica.Context;
+import ch.endte.syncmatica.ServerPlacement;
+import ch.endte.syncmatica.extended_core.SubRegionPlacementModification;
+import net.minecraft.util.BlockMirror;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// bounding boxes of all placements, hashed into 256x256 block columns per dimension
+// the sub region layout of a litematic is read once per hash in the background
+// until it is known, or if the file is not available locally, a placement is indexed by its origin alone
+public class SpatialIndex {
+
+    private static final int CELL_SHIFT = 8;
+    private static final int CELL_SIZE = 1 << CELL_SHIFT;
+    // placements spanning more cells than this are kept in a list that every query checks
+    private static final int MAX_CELLS = 1024;
+
+    private final Context context;
+    private final Map<UUID, SchematicLayout> layouts = new ConcurrentHashMap<>();
+    private final Set<UUID> resolving = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Entry> entries = new HashMap<>();
+    private final Map<String, Dimension> dimensions = new HashMap<>();
+    private ExecutorService executor = null;
+    private boolean closed = false;
+
+    public SpatialIndex(final Context context) {
+        this.context = context;
+    }
+
+    public synchronized void update(final ServerPlacement placement, final boolean present) {
+        final Entry old = entries.remove(placement.getId());
+        if (old != null) {
+            unlink(old);
+        }
+        if (!present || placement.getOrigin() == null) {
+            return;
+        }
+        final Entry entry = new Entry(placement);
+        final SchematicLayout layout = layouts.get(placement.getHash());
+        if (layout == null) {
+            requestLayout(placement);
+        }
+        computeBoxes(entry, layout);
+        entries.put(placement.getId(), entry);
+        link(entry);
+    }
+
+    public synchronized Box getBounds(final UUID placementId) {
+        final Entry entry = entries.get(placementId);
+        return entry == null ? null : entry.bounds;
+    }
+
+    public synchronized Collection<ServerPlacement> getPlacementsAt(final String dimensionId, final BlockPos pos) {
+        final Collection<ServerPlacement> result = new ArrayList<>();
+        final Dimension dimension = dimensions.get(dimensionId);
+        if (dimension == null) {
+            return result;
+        }
+        final Set<Entry> candidates = new HashSet<>(dimension.oversized);
+        candidates.addAll(dimension.cells.getOrDefault(cellKey(pos.getX() >> CELL_SHIFT, pos.getZ() >> CELL_SHIFT), Collections.emptySet()));
+        for (final Entry entry : candidates) {
+            if (entry.contains(pos)) {
+                result.add(entry.placement);
+            }
+        }
+        return result;
+    }
+
+    public synchronized Collection<ServerPlacement> getPlacementsIn(final String dimensionId, final Box box) {
+        final Collection<ServerPlacement> result = new ArrayList<>();
+        final Dimension dimension = dimensions.get(dimensionId);
+        if (dimension == null) {
+            return result;
+        }
+        final Set<Entry> candidates = new HashSet<>(dimension.oversized);
+        final long cellCount = (long) ((box.maxX >> CELL_SHIFT) - (box.minX >> CELL_SHIFT) + 1) * ((box.maxZ >> CELL_SHIFT) - (box.minZ >> CELL_SHIFT) + 1);
+        if (cellCount > dimension.cells.size()) {
+            for (final Set<Entry> cell : dimension.cells.values()) {
+                candidates.addAll(cell);
+            }
+        } else {
+            for (int x = box.minX >> CELL_SHIFT; x <= box.maxX >> CELL_SHIFT; x++) {
+                for (int z = box.minZ >> CELL_SHIFT; z <= box.maxZ >> CELL_SHIFT; z++) {
+                    candidates.addAll(dimension.cells.getOrDefault(cellKey(x, z), Collections.emptySet()));
+                }
+            }
+        }
+        for (final Entry entry : candidates) {
+            if (entry.intersects(box)) {
+                result.add(entry.placement);
+            }
+        }
+        return result;
+    }
+
+    // searches rings of cells around the position until no unseen placement can be closer than the k nearest found
+    public synchronized List<ServerPlacement> getNearest(final String dimensionId, final BlockPos pos, final int k) {
+        final Dimension dimension = dimensions.get(dimensionId);
+        if (dimension == null || k <= 0) {
+            return new ArrayList<>();
+        }
+        final Map<Entry, Double> distances = new HashMap<>();
+        for (final Entry entry : dimension.oversized) {
+            distances.put(entry, entry.getSquaredDistance(pos));
+        }
+        final int centerX = pos.getX() >> CELL_SHIFT;
+        final int centerZ = pos.getZ() >> CELL_SHIFT;
+        long visited = 0;
+        for (int ring = 0; distances.size() < dimension.oversized.size() + dimension.gridded; ring++) {
+            // once the rings cover more cells than are occupied, checking every placement is cheaper
+            visited += ring == 0 ? 1 : 8L * ring;
+            if (visited > dimension.cells.size()) {
+                for (final Set<Entry> cell : dimension.cells.values()) {
+                    for (final Entry entry : cell) {
+                        distances.computeIfAbsent(entry, e -> e.getSquaredDistance(pos));
+                    }
+                }
+                break;
+            }
+            for (int x = centerX - ring; x <= centerX + ring; x++) {
+                for (int z = centerZ - ring; z <= centerZ + ring; z++) {
+                    if (Math.abs(x - centerX) != ring && Math.abs(z - centerZ) != ring) {
+                        continue;
+                    }
+                    for (final Entry entry : dimension.cells.getOrDefault(cellKey(x, z), Collections.emptySet())) {
+                        distances.computeIfAbsent(entry, e -> e.getSquaredDistance(pos));
+                    }
+                }
+            }
+            final double bound = (double) ring * CELL_SIZE;
+            if (distances.size() >= k && kthDistance(distances.values(), k) <= bound * bound) {
+                break;
+            }
+        }
+        final List<Map.Entry<Entry, Double>> sorted = new ArrayList<>(distances.entrySet());
+        sorted.sort(Map.Entry.comparingByValue());
+        final List<ServerPlacement> result = new ArrayList<>();
+        for (int i = 0; i < sorted.size() && i < k; i++) {
+            result.add(sorted.get(i).getKey().placement);
+        }
+        return result;
+    }
+
+    public synchronized void shutdown() {
+        closed = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private static double kthDistance(final Collection<Double> distances, final int k) {
+        final PriorityQueue<Double> nearest = new PriorityQueue<>(Comparator.reverseOrder());
+        for (final Double distance : distances) {
+            nearest.add(distance);
+            if (nearest.size() > k) {
+                nearest.poll();
+            }
+        }
+        return nearest.peek();
+    }
+
+    private void requestLayout(final ServerPlacement placement) {
+        if (closed || !resolving.add(placement.getHash())) {
+            return;
+        }
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "Syncmatica-SpatialIndex");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        final UUID hash = placement.getHash();
+        executor.submit(() -> {
+            try {
+                // resolving the file may hash it, which must not hold up the caller or the index
+                final File litematic = context.getFileStorage().getLocalLitematic(placement);
+                if (litematic != null && litematic.isFile()) {
+                    layouts.put(hash, SchematicLayout.read(litematic));
+                    relink(hash);
+                }
+            } catch (final IOException e) {
+                e.printStackTrace();
+            } finally {
+                resolving.remove(hash);
+            }
+        });
+    }
+
+    private synchronized void relink(final UUID hash) {
+        final SchematicLayout layout = layouts.get(hash);
+        for (final Entry entry : entries.values()) {
+            if (entry.placement.getHash().equals(hash)) {
+                unlink(entry);
+                computeBoxes(entry, layout);
+                link(entry);
+            }
+        }
+    }
+
+    // mirrors how litematica places sub regions: the placement transform moves each region,
+    // then the sub region's own rotation and mirror turn it around its moved position
+    private static void computeBoxes(final Entry entry, final SchematicLayout layout) {
+        final List<Box> boxes = new ArrayList<>();
+        if (layout != null) {
+            for (final SchematicLayout.Region region : layout.getRegions()) {
+                final SubRegionPlacementModification modification = entry.modifications.get(region.name);
+                final BlockPos relative = modification != null ? modification.position : region.position;
+                final BlockRotation subRotation = modification != null ? modification.rotation : BlockRotation.NONE;
+                final BlockMirror subMirror = modification != null ? modification.mirror : BlockMirror.NONE;
+                final BlockPos start = entry.origin.add(transform(relative, entry.mirror, entry.rotation));
+                final BlockPos end = start.add(transform(transform(region.getEndOffset(), entry.mirror, entry.rotation), subMirror, subRotation));
+                boxes.add(Box.of(start, end));
+            }
+        }
+        if (boxes.isEmpty()) {
+            boxes.add(Box.of(entry.origin, entry.origin));
+        }
+        Box bounds = boxes.get(0);
+        for (final Box box : boxes) {
+            bounds = bounds.union(box);
+        }
+        entry.boxes = boxes;
+        entry.bounds = bounds;
+    }
+
+    private static BlockPos transform(final BlockPos pos, final BlockMirror mirror, final BlockRotation rotation) {
+        int x = pos.getX();
+        final int y = pos.getY();
+        int z = pos.getZ();
+        if (mirror == BlockMirror.LEFT_RIGHT) {
+            z = -z;
+        } else if (mirror == BlockMirror.FRONT_BACK) {
+            x = -x;
+        }
+        switch (rotation) {
+            case CLOCKWISE_90:
+                return new BlockPos(-z, y, x);
+            case COUNTERCLOCKWISE_90:
+                return new BlockPos(z, y, -x);
+            case CLOCKWISE_180:
+                return new BlockPos(-x, y, -z);
+            default:
+                return new BlockPos(x, y, z);
+        }
+    }
+
+    private void link(final Entry entry) {
+        final Dimension dimension = dimensions.computeIfAbsent(entry.dimension, key -> new Dimension());
+        final Box bounds = entry.bounds;
+        final long cellCount = (long) ((bounds.maxX >> CELL_SHIFT) - (bounds.minX >> CELL_SHIFT) + 1) * ((bounds.maxZ >> CELL_SHIFT) - (bounds.minZ >> CELL_SHIFT) + 1);
+        if (cellCount > MAX_CELLS) {
+            dimension.oversized.add(entry);
+            return;
+        }
+        for (int x = bounds.minX >> CELL_SHIFT; x <= bounds.maxX >> CELL_SHIFT; x++) {
+            for (int z = bounds.minZ >> CELL_SHIFT; z <= bounds.maxZ >> CELL_SHIFT; z++) {
+                dimension.cells.computeIfAbsent(cellKey(x, z), key -> new HashSet<>()).add(entry);
+            }
+        }
+        dimension.gridded++;
+    }
+
+    private void unlink(final Entry entry) {
+        final Dimension dimension = dimensions.get(entry.dimension);
+        if (dimension == null) {
+            return;
+        }
+        if (dimension.oversized.remove(entry)) {
+            return;
+        }
+        final Box bounds = entry.bounds;
+        for (int x = bounds.minX >> CELL_SHIFT; x <= bounds.maxX >> CELL_SHIFT; x++) {
+            for (int z = bounds.minZ >> CELL_SHIFT; z <= bounds.maxZ >> CELL_SHIFT; z++) {
+                final long key = cellKey(x, z);
+                final Set<Entry> cell = dimension.cells.get(key);
+                if (cell != null && cell.remove(entry) && cell.isEmpty()) {
+                    dimension.cells.remove(key);
+                }
+            }
+        }
+        dimension.gridded--;
+    }
+
+    private static long cellKey(final int x, final int z) {
+        return ((long) x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    // the geometry is copied when the placement is indexed, so a background relink never reads a placement mid change
+    private static class Entry {
+        final ServerPlacement placement;
+        final String dimension;
+        final BlockPos origin;
+        final BlockRotation rotation;
+        final BlockMirror mirror;
+        final Map<String, SubRegionPlacementModification> modifications;
+        List<Box> boxes;
+        Box bounds;
+
+        Entry(final ServerPlacement placement) {
+            this.placement = placement;
+            dimension = placement.getDimension();
+            origin = placement.getPosition();
+            rotation = placement.getRotation();
+            mirror = placement.getMirror();
+            final Map<String, SubRegionPlacementModification> data = placement.getSubRegionData().getModificationData();
+            modifications = data == null ? Collections.emptyMap() : new HashMap<>(data);
+        }
+
+        boolean contains(final BlockPos pos) {
+            if (!bounds.contains(pos)) {
+                return false;
+            }
+            for (final Box box : boxes) {
+                if (box.contains(pos)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        boolean intersects(final Box other) {
+            if (!bounds.intersects(other)) {
+                return false;
+            }
+            for (final Box box : boxes) {
+                if (box.intersects(other)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        double getSquaredDistance(final BlockPos pos) {
+            double distance = Double.MAX_VALUE;
+            for (final Box box : boxes) {
+                distance = Math.min(distance, box.getSquaredDistance(pos));
+            }
+            return distance;
+        }
+    }
+
+    private static class Dimension {
+        final Map<Long, Set<Entry>> cells = new HashMap<>();
+        final Set<Entry> oversized = new HashSet<>();
+        int gridded = 0;
+    }
+}
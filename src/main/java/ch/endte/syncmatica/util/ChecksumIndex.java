@@ -0,0 +1,160 @@
+package ch.endte.syncmatica.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// remembers file checksums by path, size and modification time across restarts
+// new entries are appended to the index file, it is rewritten without stale entries when it gets loaded
+public class ChecksumIndex implements FileHasher {
+
+    private static final int MAGIC = 0x53594D43;
+    private static final byte VERSION = 1;
+
+    private final FileHasher hasher;
+    private final File indexFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private DataOutputStream out = null;
+    private boolean loaded = false;
+    private boolean closed = false;
+
+    public ChecksumIndex(final FileHasher hasher, final File indexFile) {
+        this.hasher = hasher;
+        this.indexFile = indexFile;
+    }
+
+    @Override
+    public UUID hash(final File file) throws IOException, NoSuchAlgorithmException {
+        load();
+        final String key = getKey(file);
+        final long size = file.length();
+        final long lastModified = file.lastModified();
+        final Entry cached = entries.get(key);
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            return cached.hash;
+        }
+        final UUID hash = hasher.hash(file);
+        // a file that changed while it was hashed must not be recorded under its old stamp
+        if (file.length() == size && file.lastModified() == lastModified) {
+            final Entry entry = new Entry(size, lastModified, hash);
+            entries.put(key, entry);
+            append(key, entry);
+        }
+        return hash;
+    }
+
+    // files can still be hashed afterwards, they are just no longer recorded
+    public synchronized void close() {
+        closed = true;
+        closeStream();
+    }
+
+    private void closeStream() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (final IOException e) {
+                e.printStackTrace();
+            }
+            out = null;
+        }
+    }
+
+    private static String getKey(final File file) {
+        return file.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (indexFile.isFile()) {
+            try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+                if (in.readInt() == MAGIC && in.readByte() == VERSION) {
+                    while (true) {
+                        final String key = in.readUTF();
+                        final Entry entry = new Entry(in.readLong(), in.readLong(), new UUID(in.readLong(), in.readLong()));
+                        entries.put(key, entry);
+                    }
+                }
+            } catch (final EOFException ignored) {
+            } catch (final IOException e) {
+                e.printStackTrace();
+            }
+        }
+        entries.keySet().removeIf(key -> !new File(key).isFile());
+        rewrite();
+    }
+
+    private synchronized void append(final String key, final Entry entry) {
+        if (closed) {
+            return;
+        }
+        try {
+            if (out == null) {
+                out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)));
+            }
+            write(out, key, entry);
+            out.flush();
+        } catch (final IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void rewrite() {
+        closeStream();
+        indexFile.getParentFile().mkdirs();
+        final File tempFile = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try {
+            try (final DataOutputStream tempOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                tempOut.writeInt(MAGIC);
+                tempOut.writeByte(VERSION);
+                for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+                    write(tempOut, entry.getKey(), entry.getValue());
+                }
+            }
+            try {
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final AtomicMoveNotSupportedException e) {
+                Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (final IOException e) {
+            e.printStackTrace();
+            tempFile.delete();
+        }
+    }
+
+    private static void write(final DataOutputStream stream, final String key, final Entry entry) throws IOException {
+        stream.writeUTF(key);
+        stream.writeLong(entry.size);
+        stream.writeLong(entry.lastModified);
+        stream.writeLong(entry.hash.getMostSignificantBits());
+        stream.writeLong(entry.hash.getLeastSignificantBits());
+    }
+
+    private static class Entry {
+        final long size;
+        final long lastModified;
+        final UUID hash;
+
+        Entry(final long size, final long lastModified, final UUID hash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package ch.endte.syncmatica.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+public interface FileHasher {
+
+    UUID hash(File file) throws IOException, NoSuchAlgorithmException;
+}
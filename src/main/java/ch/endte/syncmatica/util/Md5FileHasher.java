@@ -0,0 +1,35 @@
+package ch.endte.syncmatica.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+
+// md5 stays the placement hash on the wire, the file is fed to the digest through a reused direct buffer
+// the file is read rather than mapped since a mapping keeps it locked on windows until it is garbage collected
+public class Md5FileHasher implements FileHasher {
+
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    // files are hashed from several scanner threads at once
+    private final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    @Override
+    public UUID hash(final File file) throws IOException, NoSuchAlgorithmException {
+        final MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+        final ByteBuffer buffer = buffers.get();
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer.clear();
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                messageDigest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return UUID.nameUUIDFromBytes(messageDigest.digest());
+    }
+}
@@ -3,6 +3,7 @@ package ch.endte.syncmatica.util;
 import net.minecraft.util.math.BlockPos;
 import org.apache.logging.log4j.LogManager;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -17,13 +18,16 @@ public class SyncmaticaUtil {
     static final int[] ILLEGAL_CHARS = {34, 60, 62, 124, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19, 20, 21, 22, 23, 24, 25, 26, 27, 28, 29, 30, 31, 58, 42, 63, 92, 47};
     static final String ILLEGAL_PATTERNS = "(^(con|prn|aux|nul|com[0-9]|lpt[0-9])(\\..*)?$)|(^\\.\\.*$)";
 
+    // a context installs its checksum index while it runs
+    private static volatile FileHasher fileHasher = new Md5FileHasher();
+
     private SyncmaticaUtil() {
         
     }
 
     public static UUID createChecksum(final InputStream fis) throws NoSuchAlgorithmException, IOException {
         
-        final byte[] buffer = new byte[4096]; 
+        final byte[] buffer = new byte[65536]; 
         final MessageDigest messageDigest = MessageDigest.getInstance("MD5");
         int numRead;
 
@@ -37,6 +41,24 @@ public class SyncmaticaUtil {
         fis.close();
         return UUID.nameUUIDFromBytes(messageDigest.digest());
     }
+
+    public static UUID createChecksum(final File file) throws NoSuchAlgorithmException, IOException {
+        return fileHasher.hash(file);
+    }
+
+    // returns the hasher that was installed before
+    public static FileHasher setFileHasher(final FileHasher hasher) {
+        final FileHasher previous = fileHasher;
+        fileHasher = hasher;
+        return previous;
+    }
+
+    // only restores the previous hasher if no other context replaced this one in the meantime
+    public static void resetFileHasher(final FileHasher current, final FileHasher previous) {
+        if (fileHasher == current) {
+            fileHasher = previous;
+        }
+    }
     
 
     static {